@@ -0,0 +1,140 @@
+package org.urobbyu;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Throughput and allocation benchmarks of the refresh path.
+ * Runs headless: menus are rendered into <b>StandInMenu</b>s instead of AWT peers
+ */
+public class Benchmarks {
+    private static final int[] SIZES = { 10, 100, 1000, 10000 };
+    private static final int[] FAVORITES = { 10, 100, 500 };
+    private static final com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private static long warmupNanos = 1_000_000_000L;
+    private static long measureNanos = 3_000_000_000L;
+    private static volatile Object sink;
+
+    /**
+     * Start of the benchmarks
+     * @param args optional name filter, e.g. <b>decode</b>
+     */
+    public static void main(String[] args) throws Exception {
+        String filter = args.length > 0 ? args[0] : "";
+        if (Boolean.getBoolean("bench.quick")) {
+            warmupNanos /= 10;
+            measureNanos /= 10;
+        }
+
+        System.out.printf("%-22s %8s %14s %14s %12s%n", "Benchmark", "Rows", "ops/s", "B/op", "MB/s alloc");
+
+        for (int rows : SIZES) {
+            StabFixture fixture = new StabFixture(rows, rows);
+            InputDecoder inputDecoder = new InputDecoder(fixture).reload();
+            AudioSnapshot data = inputDecoder.getSnapshot();
+            List<String[]> decoded = new ArrayList<>();
+            MenuBuilder menuBuilder = new MenuBuilder(false, false, false);
+            StandInMenu.Reconciler reconciler = new StandInMenu.Reconciler();
+            StandInMenu appsMenu = StandInMenu.root();
+            InputDecoder.RowVisitor blackhole = new InputDecoder.RowVisitor() {
+                @Override
+                public void app(String name, boolean muted, String processId, String processPath, String itemId, String volume) { sink = itemId; }
+
+                @Override
+                public void device(String name, String itemId, String deviceName, String volume) { sink = itemId; }
+            };
+            fixture.snapshot(new InputDecoder.RowVisitor() {
+                @Override
+                public void app(String name, boolean muted, String processId, String processPath, String itemId, String volume) { decoded.add(new String[]{ name, String.valueOf(muted), processId, processPath, itemId, volume }); }
+
+                @Override
+                public void device(String name, String itemId, String deviceName, String volume) { decoded.add(new String[]{ name, itemId, deviceName, volume }); }
+            });
+
+            StabReader reader = new StabReader();
+            if ("decode".startsWith(filter))
+                run("decode", rows, () -> reader.read(fixture.open(), blackhole));
+            if ("reload".startsWith(filter))
+                run("reload", rows, () -> sink = new InputDecoder(fixture).reload());
+            // Same output every time, so only the fingerprint is computed
+            if ("reloadUnchanged".startsWith(filter))
+                run("reloadUnchanged", rows, () -> sink = inputDecoder.reload());
+            if ("refreshData".startsWith(filter))
+                run("refreshData", rows, () -> {
+                    // Replaying decoded rows measures only the snapshot build
+                    AudioSnapshot.Builder builder = new AudioSnapshot.Builder();
+                    for (String[] row : decoded) {
+                        if (row.length == 6) builder.app(row[0], Boolean.parseBoolean(row[1]), row[2], row[3], row[4], row[5]);
+                        else builder.device(row[0], row[1], row[2], row[3]);
+                    }
+                    sink = builder.build();
+                });
+            if ("appsMenu".startsWith(filter))
+                run("appsMenu", rows, () -> reconciler.reconcile(appsMenu, menuBuilder.appsMenu(data, false)));
+
+            if (rows == SIZES[SIZES.length - 1] && "favorites".startsWith(filter)) {
+                for (int count : FAVORITES) {
+                    FavoritesStore favorites = favorites(data, count);
+                    StandInMenu favoritesMenu = StandInMenu.root();
+                    run("favorites(" + count + ")", rows, () -> reconciler.reconcile(favoritesMenu, menuBuilder.favoritesMenu(menuBuilder.favoriteApps(data, favorites, false), false)));
+                }
+            }
+        }
+    }
+
+    /**
+     * Measures <b>op</b> and prints throughput and allocation
+     * @param name name of the benchmark
+     * @param rows size of the fixture
+     * @param op   measured operation
+     */
+    private static void run(String name, int rows, Op op) throws Exception {
+        loop(op, warmupNanos);
+
+        System.gc();
+        long thread = Thread.currentThread().getId();
+        long bytes = threads.getThreadAllocatedBytes(thread);
+        long start = System.nanoTime();
+        long ops = loop(op, measureNanos);
+        long time = System.nanoTime() - start;
+        bytes = threads.getThreadAllocatedBytes(thread) - bytes;
+
+        System.out.printf("%-22s %8d %14.1f %14d %12.1f%n", name, rows, ops * 1e9 / time, bytes / ops, bytes * 1e3 / time);
+    }
+
+    /**
+     * Repeats <b>op</b> for the provided time
+     * @return amount of repeats
+     */
+    private static long loop(Op op, long nanos) throws Exception {
+        long ops = 0;
+        long end = System.nanoTime() + nanos;
+        do {
+            op.run();
+            ops++;
+        } while (System.nanoTime() < end);
+        return ops;
+    }
+
+    /**
+     * Pins <b>count</b> app and device pairs, including some not running apps and missing devices
+     */
+    private static FavoritesStore favorites(AudioSnapshot data, int count) {
+        FavoritesStore favorites = new FavoritesStore();
+        for (int i = 1; i <= count; i++) {
+            int app = i % (data.sessions().size() + 3);
+            int device = i % (data.devices().size() + 1);
+            favorites.add(
+                app < data.sessions().size() ? data.sessions().get(app).processPath : "C:\\Missing\\app" + app + ".exe",
+                device < data.devices().size() ? data.devices().get(device).itemId : "{missing}." + i
+            );
+        }
+        return favorites;
+    }
+
+    private interface Op {
+        void run() throws Exception;
+    }
+}
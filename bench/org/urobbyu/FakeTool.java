@@ -0,0 +1,53 @@
+package org.urobbyu;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Stand-in of an external tool for <b>ProcessSupervisor</b>, started as a separate JVM so it runs anywhere the bench does.
+ * <p>
+ * Modes are <b>sleep ms</b>, <b>fail code message</b>, which writes the message to stderr and exits with the code,
+ * and <b>spawn ms</b>, which starts a sleeping child of it's own, prints it's PID and sleeps as well
+ */
+public class FakeTool {
+    /**
+     * Start of the stand-in
+     * @param args mode followed by it's arguments
+     */
+    public static void main(String[] args) throws Exception {
+        switch (args[0]) {
+            case "sleep":
+                Thread.sleep(Long.parseLong(args[1]));
+                break;
+            case "fail":
+                System.err.println(args[2]);
+                System.exit(Integer.parseInt(args[1]));
+                break;
+            case "spawn":
+                Process child = new ProcessBuilder(command("sleep", args[1])).inheritIO().start();
+                System.out.println(child.pid());
+                System.out.flush();
+                Thread.sleep(Long.parseLong(args[1]));
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown mode: " + args[0]);
+        }
+    }
+
+    /**
+     * Builds command line running the stand-in with the same JVM and class path
+     * @param args mode followed by it's arguments
+     * @return command line
+     */
+    public static String[] command(String... args) {
+        List<String> command = new ArrayList<>();
+        command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(FakeTool.class.getName());
+        command.addAll(Arrays.asList(args));
+        return command.toArray(new String[0]);
+    }
+}
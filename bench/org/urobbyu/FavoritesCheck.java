@@ -0,0 +1,122 @@
+package org.urobbyu;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Checks of <b>FavoritesStore</b> against a <b>config.properties</b> written the way older versions did: positional
+ * <b>appN</b> and <b>deviceN</b> pairs with gaps left by removals, out of order in the file. Loading keeps the numeric
+ * order and the renumbered save loads back the same. Every check prints it's result and the run exits with 1 if any
+ * of them failed
+ */
+public class FavoritesCheck {
+    // Properties.store() of older versions, edited by hand afterwards
+    private static final String LEGACY = String.join("\n",
+        "#Sat Mar 02 18:41:07 CET 2024",
+        "device10={0.0.0.00000000}.{headphones}",
+        "app10=C\\:\\\\Program Files\\\\VideoLAN\\\\VLC\\\\vlc.exe",
+        "app12=C\\:\\\\Program Files\\\\Mozilla Firefox\\\\firefox.exe",
+        "device12={0.0.0.00000000}.{headphones}",
+        "app2=C\\:\\\\Games\\\\game.exe",
+        "device2={0.0.0.00000000}.{speakers}",
+        "app1=C\\:\\\\Program Files\\\\Mozilla Firefox\\\\firefox.exe",
+        "device1={0.0.0.00000000}.{speakers}",
+        "! pair 3 and 4 were removed by hand",
+        "app5=C\\:\\\\Games\\\\game.exe",
+        "device5={0.0.0.00000000}.{speakers}",
+        "app7=C\\:\\\\Users\\\\me\\\\AppData\\\\Roaming\\\\Spotify\\\\Spotify.exe",
+        "app9=C\\:\\\\Tools\\\\no device.exe",
+        "device8={0.0.0.00000000}.{orphan}",
+        "device7={0.0.0.00000000}.{headphones}",
+        "appearance=dark",
+        "");
+
+    private static final String FIREFOX = "C:\\Program Files\\Mozilla Firefox\\firefox.exe";
+    private static final String GAME = "C:\\Games\\game.exe";
+    private static final String SPOTIFY = "C:\\Users\\me\\AppData\\Roaming\\Spotify\\Spotify.exe";
+    private static final String VLC = "C:\\Program Files\\VideoLAN\\VLC\\vlc.exe";
+    private static final String SPEAKERS = "{0.0.0.00000000}.{speakers}";
+    private static final String HEADPHONES = "{0.0.0.00000000}.{headphones}";
+
+    private static final List<String> failures = new ArrayList<>();
+
+    /**
+     * Start of the checks
+     * @param args unused
+     */
+    public static void main(String[] args) throws IOException {
+        FavoritesStore store = legacy();
+        if (store != null) roundTrip(store);
+
+        for (String failure : failures) System.out.println("FAIL " + failure);
+        if (failures.isEmpty()) System.out.println("PASS");
+        System.exit(failures.isEmpty() ? 0 : 1);
+    }
+
+    /**
+     * Legacy file loads in the numeric order of it's pairs, skipping gaps, duplicates and apps without a device
+     */
+    private static FavoritesStore legacy() throws IOException {
+        FavoritesStore store = new FavoritesStore();
+        store.load(new ByteArrayInputStream(LEGACY.getBytes(StandardCharsets.ISO_8859_1)));
+
+        // app10 comes after app7 rather than after app1, app12 is grouped under the first pair of it's app
+        List<String> expected = List.of(FIREFOX + " " + SPEAKERS, FIREFOX + " " + HEADPHONES, GAME + " " + SPEAKERS,
+            SPOTIFY + " " + HEADPHONES, VLC + " " + HEADPHONES);
+
+        List<String> loaded = contents(store);
+        check("legacy", loaded.equals(expected), "expected " + expected + ", loaded " + loaded);
+        check("legacy", store.size() == 5, "expected 5 pairs, counted " + store.size());
+        report("legacy", store.size() + " pairs of " + store.apps().size() + " apps");
+        return loaded.equals(expected) ? store : null;
+    }
+
+    /**
+     * Save numbers the pairs from 1 without gaps, loading it back gives the same store and the same save
+     */
+    private static void roundTrip(FavoritesStore store) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        store.store(out);
+        Properties saved = new Properties();
+        saved.load(new ByteArrayInputStream(out.toByteArray()));
+
+        Properties expected = new Properties();
+        String[][] pairs = {
+            { FIREFOX, SPEAKERS }, { FIREFOX, HEADPHONES }, { GAME, SPEAKERS }, { SPOTIFY, HEADPHONES }, { VLC, HEADPHONES }
+        };
+        for (int i = 0; i < pairs.length; i++) {
+            expected.setProperty("app" + (i + 1), pairs[i][0]);
+            expected.setProperty("device" + (i + 1), pairs[i][1]);
+        }
+        check("round trip", saved.equals(expected), "saved " + saved);
+
+        FavoritesStore reloaded = new FavoritesStore();
+        reloaded.load(new ByteArrayInputStream(out.toByteArray()));
+        check("round trip", contents(reloaded).equals(contents(store)), "reloaded " + contents(reloaded));
+        check("round trip", reloaded.size() == store.size(), "reloaded " + reloaded.size() + " pairs of " + store.size());
+        check("round trip", reloaded.toProperties().equals(saved), "second save differs: " + reloaded.toProperties());
+        report("round trip", "saved as app1 to app" + saved.size() / 2 + ", reloaded the same");
+    }
+
+    /**
+     * Lists pairs of the <b>store</b> in it's order, so the order of apps and devices is compared as well
+     */
+    private static List<String> contents(FavoritesStore store) {
+        List<String> contents = new ArrayList<>();
+        for (String app : store.apps()) {
+            for (String device : store.devices(app)) contents.add(app + " " + device);
+        }
+        return contents;
+    }
+
+    private static void check(String name, boolean condition, String message) {
+        if (!condition) failures.add(name + ": " + message);
+    }
+
+    private static void report(String name, String result) {
+        System.out.printf("%-14s %s%n", name, result);
+    }
+}
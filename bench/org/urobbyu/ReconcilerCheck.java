@@ -0,0 +1,123 @@
+package org.urobbyu;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Checks of <b>MenuReconciler</b> against <b>StandInMenu</b>s: the result matches the nodes, and the amount of
+ * removes, inserts and created entries follows the amount of changed entries rather than the size of the menu.
+ * Every check prints it's counters and the run exits with 1 if any of them failed
+ */
+public class ReconcilerCheck {
+    private static final int SIZE = 60;
+
+    private static final List<String> failures = new ArrayList<>();
+
+    /**
+     * Start of the checks
+     * @param args unused
+     */
+    public static void main(String[] args) {
+        System.out.printf("%-16s %8s %8s %8s %8s%n", "Check", "Removes", "Inserts", "Creates", "Peers");
+
+        List<MenuNode> nodes = items(0, SIZE);
+        check("unchanged", nodes, nodes, 0, 0, 0, 0);
+
+        List<MenuNode> removed = new ArrayList<>(nodes);
+        removed.remove(SIZE / 2);
+        check("remove one", nodes, removed, 1, 0, 0, 0);
+
+        List<MenuNode> appended = new ArrayList<>(nodes);
+        appended.add(item(SIZE));
+        check("append one", nodes, appended, 0, 1, 1, 1);
+
+        // Menu.insert() re-adds the following entries, so inserting before the end costs their peers as well
+        List<MenuNode> added = new ArrayList<>(nodes);
+        added.add(SIZE / 2, item(SIZE));
+        check("insert one", nodes, added, 0, 1, 1, 1 + SIZE / 2);
+
+        List<MenuNode> moved = new ArrayList<>(nodes);
+        moved.add(moved.remove(0));
+        check("move one", nodes, moved, 1, 1, 0, 1);
+
+        List<MenuNode> swapped = new ArrayList<>(nodes);
+        Collections.swap(swapped, 10, 11);
+        check("swap two", nodes, swapped, 1, 1, 0, 1 + SIZE - 12);
+
+        List<MenuNode> kind = new ArrayList<>(nodes);
+        kind.set(SIZE / 2, MenuNode.checkbox(kind.get(SIZE / 2).key, "checkbox", true, "command"));
+        check("change kind", nodes, kind, 1, 1, 1, 1 + SIZE / 2 - 1);
+
+        List<MenuNode> reversed = new ArrayList<>(nodes);
+        Collections.reverse(reversed);
+        check("reverse", nodes, reversed, SIZE - 1, SIZE - 1, 0, SIZE - 1);
+
+        List<MenuNode> replaced = items(SIZE, SIZE);
+        check("replace all", nodes, replaced, SIZE, SIZE, SIZE, SIZE);
+
+        // Change deep inside one submenu stays inside of it
+        List<MenuNode> menus = new ArrayList<>();
+        for (int i = 0; i < 10; i++) menus.add(MenuNode.menu("menu" + i, "Menu " + i, true, items(0, SIZE / 10)));
+        List<MenuNode> nested = new ArrayList<>(menus);
+        List<MenuNode> children = items(0, SIZE / 10);
+        children.remove(2);
+        nested.set(5, MenuNode.menu("menu5", "Menu 5", true, children));
+        check("nested", menus, nested, 1, 0, 0, 0);
+
+        for (String failure : failures) System.out.println("FAIL " + failure);
+        if (failures.isEmpty()) System.out.println("PASS");
+        System.exit(failures.isEmpty() ? 0 : 1);
+    }
+
+    /**
+     * Reconciles menu built from <b>before</b> with <b>after</b> and compares counters with expected ones
+     */
+    private static void check(String name, List<MenuNode> before, List<MenuNode> after,
+                              int removes, int inserts, int creates, int peers) {
+        StandInMenu.Reconciler reconciler = new StandInMenu.Reconciler();
+        StandInMenu menu = StandInMenu.root();
+        reconciler.reconcile(menu, before);
+        List<StandInMenu> entries = new ArrayList<>(menu.children);
+        reconciler.resetCounters();
+
+        reconciler.reconcile(menu, after);
+        System.out.printf("%-16s %8d %8d %8d %8d%n", name, reconciler.removes, reconciler.inserts, reconciler.creates, reconciler.peers);
+
+        if (!matches(menu, after)) failures.add(name + ": menu differs from the nodes");
+        if (reconciler.removes != removes || reconciler.inserts != inserts || reconciler.creates != creates || reconciler.peers != peers)
+            failures.add(String.format("%s: expected %d removes, %d inserts, %d creates and %d peers, got %d, %d, %d and %d",
+                name, removes, inserts, creates, peers, reconciler.removes, reconciler.inserts, reconciler.creates, reconciler.peers));
+
+        // Entries that stayed keep their instances
+        for (StandInMenu entry : menu.children) {
+            for (StandInMenu old : entries) {
+                if (old.name.equals(entry.name) && old.kind == entry.kind && old != entry) {
+                    failures.add(name + ": " + entry.name + " was recreated");
+                    return;
+                }
+            }
+        }
+    }
+
+    private static boolean matches(StandInMenu menu, List<MenuNode> nodes) {
+        if (menu.children.size() != nodes.size()) return false;
+        for (int i = 0; i < nodes.size(); i++) {
+            StandInMenu entry = menu.children.get(i);
+            MenuNode node = nodes.get(i);
+            if (!entry.name.equals(node.key) || entry.kind != node.kind || !entry.label.equals(node.label)) return false;
+            if (node.kind == MenuNode.Kind.MENU && !matches(entry, node.children)) return false;
+        }
+        return true;
+    }
+
+    private static List<MenuNode> items(int first, int amount) {
+        List<MenuNode> nodes = new ArrayList<>();
+        for (int i = first; i < first + amount; i++) nodes.add(item(i));
+        return nodes;
+    }
+
+    private static MenuNode item(int index) {
+        return MenuNode.item("item" + index, "Item " + index, true, "command" + index);
+    }
+}
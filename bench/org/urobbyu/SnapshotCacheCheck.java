@@ -0,0 +1,118 @@
+package org.urobbyu;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Checks of <b>SnapshotCache</b>: snapshot written to disk is read back the same, sessions of processes that are gone
+ * come back stale, and damaged or foreign files are ignored instead of failing the start.
+ * Every check prints it's result and the run exits with 1 if any of them failed
+ */
+public class SnapshotCacheCheck {
+    private static final List<String> failures = new ArrayList<>();
+
+    /**
+     * Start of the checks
+     * @param args unused
+     */
+    public static void main(String[] args) throws Exception {
+        Path directory = Files.createTempDirectory("snapshot-cache");
+        try {
+            roundTrip(directory.resolve("round-trip.dat"));
+            damaged(directory.resolve("damaged.dat"));
+        } finally {
+            for (Path file : Files.list(directory).toArray(Path[]::new)) Files.delete(file);
+            Files.delete(directory);
+        }
+
+        for (String failure : failures) System.out.println("FAIL " + failure);
+        if (failures.isEmpty()) System.out.println("PASS");
+        System.exit(failures.isEmpty() ? 0 : 1);
+    }
+
+    /**
+     * Saved snapshot is loaded back equal, only sessions of processes that don't run anymore turn stale
+     */
+    private static void roundTrip(Path file) {
+        ProcessHandle self = ProcessHandle.current();
+        String pid = String.valueOf(self.pid());
+        String path = self.info().command().orElse("");
+
+        List<AudioSnapshot.Session> sessions = Arrays.asList(
+            new AudioSnapshot.Session("Running app", false, pid, path, "{0.0.0.00000000}.{running}", 42),
+            new AudioSnapshot.Session("\u00dcn\u00efc\u00f6d\u00e9 \u2014 \u97f3\u697d", true, pid, path, "", -1),
+            new AudioSnapshot.Session("Gone app", false, "999999999", "C:\\Gone\\gone.exe", "{0.0.0.00000000}.{gone}", 100),
+            new AudioSnapshot.Session("Reused ID", false, pid, "C:\\Other\\other.exe", "", 0),
+            new AudioSnapshot.Session("Broken ID", false, "not a number", "C:\\Broken\\broken.exe", "", 5)
+        );
+        List<AudioSnapshot.Device> devices = Arrays.asList(
+            new AudioSnapshot.Device("Speakers", "{0.0.0.00000000}.{running}", "Realtek Audio", 75),
+            new AudioSnapshot.Device("Headphones", "{0.0.0.00000000}.{gone}", "USB Audio", -1)
+        );
+
+        SnapshotCache cache = new SnapshotCache(file);
+        cache.save(AudioSnapshot.of(sessions, devices));
+        AudioSnapshot loaded = cache.load();
+        if (loaded == null) {
+            failures.add("round trip: saved snapshot wasn't loaded");
+            return;
+        }
+
+        // Process ID taken by another executable counts as gone as well
+        boolean[] stale = { false, false, true, !path.isEmpty(), true };
+        List<AudioSnapshot.Session> expected = new ArrayList<>();
+        for (int i = 0; i < sessions.size(); i++) {
+            AudioSnapshot.Session session = sessions.get(i);
+            expected.add(new AudioSnapshot.Session(session.name, session.muted, session.processId, session.processPath,
+                session.deviceId, session.volume, stale[i]));
+        }
+
+        check("round trip", loaded.sessions().equals(expected), "sessions differ: " + loaded.sessions());
+        check("round trip", loaded.devices().equals(devices), "devices differ: " + loaded.devices());
+        check("round trip", loaded.session(pid) != null, "loaded snapshot has no index of process IDs");
+        report("round trip", loaded.sessions().size() + " sessions and " + loaded.devices().size() + " devices");
+    }
+
+    /**
+     * Missing, truncated, foreign and corrupted files load as no cache
+     */
+    private static void damaged(Path file) throws IOException {
+        SnapshotCache cache = new SnapshotCache(file);
+        check("damaged", cache.load() == null, "missing file was loaded");
+
+        cache.save(AudioSnapshot.of(Arrays.asList(new AudioSnapshot.Session("app", false, "1", "app.exe", "", 1)), List.of()));
+        byte[] valid = Files.readAllBytes(file);
+
+        Files.write(file, Arrays.copyOf(valid, valid.length - 3));
+        check("damaged", cache.load() == null, "truncated file was loaded");
+
+        Files.write(file, new byte[] { 'n', 'o', 'p', 'e', 0, 0, 0, 2 });
+        check("damaged", cache.load() == null, "file of another format was loaded");
+
+        try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(file))) {
+            out.write(valid, 0, 4);
+            out.writeInt(Integer.MAX_VALUE);
+        }
+        check("damaged", cache.load() == null, "file of another version was loaded");
+
+        try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(file))) {
+            out.write(valid, 0, 8);
+            out.writeInt(-1);
+        }
+        check("damaged", cache.load() == null, "file with negative count was loaded");
+        report("damaged", "every damaged file was ignored");
+    }
+
+    private static void check(String name, boolean condition, String message) {
+        if (!condition) failures.add(name + ": " + message);
+    }
+
+    private static void report(String name, String result) {
+        System.out.printf("%-14s %s%n", name, result);
+    }
+}
@@ -0,0 +1,283 @@
+package org.urobbyu;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.ref.WeakReference;
+import java.util.*;
+
+/**
+ * Soak test of the refresh path while sessions and devices churn.
+ * Runs headless like <b>Benchmarks</b>: snapshots come from <b>FakeAudioBackend</b> and menus are
+ * reconciled into <b>StandInMenu</b>s. Every window reports heap after GC, live menu entries, discarded
+ * entries that weren't collected, refresh latency and removes and inserts per changed entry, and the run exits with 1
+ * if they keep growing or menus are reshuffled beyond what changed.
+ * <p>
+ * Tuned by <b>soak.cycles</b> (50000), <b>soak.sessions</b> (200), <b>soak.devices</b> (8) and <b>soak.windows</b> (10)
+ */
+public class Soak {
+    // Allowed growth of the last windows over the first ones
+    private static final double HEAP_GROWTH = 1.25;
+    private static final long HEAP_SLACK = 4L << 20;
+    private static final double LIVE_GROWTH = 1.5;
+    private static final double LATENCY_GROWTH = 2.0;
+    private static final long LATENCY_SLACK = 200_000L;
+    // Every changed entry costs at most a remove and an insert, a few moves per window are allowed on top
+    private static final int OPS_PER_CHANGE = 2;
+    private static final int OPS_SLACK = 16;
+
+    private static final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+
+    /**
+     * Start of the soak test
+     * @param args unused
+     */
+    public static void main(String[] args) throws Exception {
+        int cycles = Integer.getInteger("soak.cycles", 50_000);
+        int sessions = Integer.getInteger("soak.sessions", 200);
+        int devices = Integer.getInteger("soak.devices", 8);
+        int windows = Math.max(4, Integer.getInteger("soak.windows", 10));
+        int window = Math.max(1, cycles / windows);
+
+        FakeAudioBackend backend = new FakeAudioBackend(sessions, devices, 0, 42);
+        InputDecoder inputDecoder = new InputDecoder(backend);
+        FavoritesStore favorites = new FavoritesStore();
+        MenuBuilder menuBuilder = new MenuBuilder(false, false, false);
+        TrackingReconciler reconciler = new TrackingReconciler();
+        StandInMenu appsMenu = StandInMenu.root();
+        StandInMenu favoritesMenu = StandInMenu.root();
+        StandInMenu favPopup = StandInMenu.root();
+        Random random = new Random(42);
+
+        long[] latencies = new long[window];
+        List<Sample> samples = new ArrayList<>();
+        Map<String, MenuNode.Kind> appsKeys = new HashMap<>();
+        Map<String, MenuNode.Kind> favoritesKeys = new HashMap<>();
+        Map<String, MenuNode.Kind> favPopupKeys = new HashMap<>();
+        long ops = 0;
+        long changes = 0;
+        long worstOps = 0;
+        long worstChanges = 0;
+        boolean isEditMode = false;
+        boolean isFavMode = false;
+
+        System.out.printf("%8s %10s %8s %8s %8s %10s %10s %10s %10s%n", "Cycle", "Heap KB", "Live", "Tree", "Leaked", "p50 us", "p99 us", "Ops", "Changes");
+
+        for (int cycle = 1; cycle <= window * windows; cycle++) {
+            backend.churn(1 + random.nextInt(Math.max(1, sessions / 20)));
+            if (cycle % 50 == 0) backend.churnDevice();
+            if (cycle % 1000 == 0) isEditMode = !isEditMode;
+            if (cycle % 700 == 0) isFavMode = !isFavMode;
+            pin(favorites, inputDecoder.getSnapshot(), random, sessions);
+
+            long start = System.nanoTime();
+            AudioSnapshot data = inputDecoder.reload().getSnapshot();
+            List<MenuNode> appsNodes = menuBuilder.appsMenu(data, isEditMode);
+            reconciler.reconcile(appsMenu, appsNodes);
+            List<MenuNode> appNodes = menuBuilder.favoriteApps(data, favorites, isEditMode);
+            List<MenuNode> favoritesNodes = Collections.emptyList();
+            List<MenuNode> favPopupNodes = Collections.emptyList();
+            if (isFavMode) {
+                favPopupNodes = menuBuilder.favPopup(appNodes);
+                reconciler.reconcile(favoritesMenu, favoritesNodes);
+                reconciler.reconcile(favPopup, favPopupNodes);
+            } else {
+                favoritesNodes = menuBuilder.favoritesMenu(appNodes, isEditMode);
+                reconciler.reconcile(favPopup, favPopupNodes);
+                reconciler.reconcile(favoritesMenu, favoritesNodes);
+            }
+            latencies[(cycle - 1) % window] = System.nanoTime() - start;
+
+            long cycleOps = reconciler.removes + reconciler.inserts;
+            long cycleChanges = changes(appsKeys, appsNodes) + changes(favoritesKeys, favoritesNodes) + changes(favPopupKeys, favPopupNodes);
+            reconciler.resetCounters();
+            ops += cycleOps;
+            changes += cycleChanges;
+            if (cycleOps - OPS_PER_CHANGE * cycleChanges > worstOps - OPS_PER_CHANGE * worstChanges) {
+                worstOps = cycleOps;
+                worstChanges = cycleChanges;
+            }
+
+            if (cycle % window == 0) {
+                Sample sample = new Sample();
+                sample.cycle = cycle;
+                sample.heap = heapAfterGc();
+                sample.live = StandInMenu.live();
+                sample.tree = appsMenu.size() + favoritesMenu.size() + favPopup.size();
+                sample.leaked = reconciler.uncollected();
+                Arrays.sort(latencies);
+                sample.p50 = latencies[window / 2];
+                sample.p99 = latencies[Math.min(window - 1, window * 99 / 100)];
+                sample.ops = ops;
+                sample.changes = changes;
+                sample.worstOps = worstOps;
+                sample.worstChanges = worstChanges;
+                samples.add(sample);
+                ops = changes = worstOps = worstChanges = 0;
+
+                System.out.printf("%8d %10d %8d %8d %8d %10.1f %10.1f %10d %10d%n", sample.cycle, sample.heap >> 10, sample.live,
+                    sample.tree, sample.leaked, sample.p50 / 1e3, sample.p99 / 1e3, sample.ops, sample.changes);
+            }
+        }
+
+        List<String> failures = check(samples);
+        for (String failure : failures) System.out.println("FAIL " + failure);
+        if (failures.isEmpty()) System.out.println("PASS");
+        System.exit(failures.isEmpty() ? 0 : 1);
+    }
+
+    /**
+     * Compares the last half of the windows with the first half, the very first window is a warmup
+     * @return failure messages
+     */
+    private static List<String> check(List<Sample> samples) {
+        List<String> failures = new ArrayList<>();
+        List<Sample> first = samples.subList(1, samples.size() / 2);
+        List<Sample> last = samples.subList(samples.size() / 2, samples.size());
+
+        long heap = max(first, s -> s.heap);
+        if (max(last, s -> s.heap) > heap * HEAP_GROWTH + HEAP_SLACK)
+            failures.add(String.format("heap after GC grew from %d KB to %d KB", heap >> 10, max(last, s -> s.heap) >> 10));
+
+        long live = max(first, s -> s.live);
+        if (max(last, s -> s.live) > live * LIVE_GROWTH)
+            failures.add(String.format("live menu entries grew from %d to %d", live, max(last, s -> s.live)));
+
+        for (Sample sample : samples) {
+            if (sample.live != sample.tree) {
+                failures.add(String.format("%d live menu entries at cycle %d, but menus have %d", sample.live, sample.cycle, sample.tree));
+                break;
+            }
+        }
+
+        // First window starts from empty menus
+        for (Sample sample : samples.subList(1, samples.size())) {
+            if (sample.ops > sample.changes * OPS_PER_CHANGE + OPS_SLACK) {
+                failures.add(String.format("%d removes and inserts for %d changed entries by cycle %d, worst cycle had %d for %d",
+                    sample.ops, sample.changes, sample.cycle, sample.worstOps, sample.worstChanges));
+                break;
+            }
+        }
+
+        Sample end = samples.get(samples.size() - 1);
+        if (end.leaked > 0) failures.add(String.format("%d discarded menu entries are still reachable", end.leaked));
+
+        long latency = max(first, s -> s.p50);
+        if (max(last, s -> s.p50) > latency * LATENCY_GROWTH + LATENCY_SLACK)
+            failures.add(String.format("median refresh grew from %.1f us to %.1f us", latency / 1e3, max(last, s -> s.p50) / 1e3));
+
+        return failures;
+    }
+
+    /**
+     * Pins a favorite of a random running app, and unpins a random one once there are twice as many as sessions
+     */
+    private static void pin(FavoritesStore favorites, AudioSnapshot data, Random random, int sessions) {
+        if (data.sessions().isEmpty() || data.devices().isEmpty()) return;
+
+        AudioSnapshot.Session session = data.sessions().get(random.nextInt(data.sessions().size()));
+        favorites.add(session.processPath, data.devices().get(random.nextInt(data.devices().size())).itemId);
+
+        if (favorites.size() > sessions * 2) {
+            List<String> apps = new ArrayList<>(favorites.apps());
+            String app = apps.get(random.nextInt(apps.size()));
+            favorites.remove(app, favorites.devices(app).iterator().next());
+        }
+    }
+
+    private static long heapAfterGc() throws InterruptedException {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(20);
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+
+    /**
+     * Counts entries that appeared, left or changed their kind since the last call, and remembers the current ones.
+     * Every entry of a new submenu has to be built, but entries leaving together with their submenu go in one step
+     * @param keys  kinds of the previous entries by their path, replaced with the current ones
+     * @param nodes current entries
+     * @return amount of changed entries
+     */
+    private static long changes(Map<String, MenuNode.Kind> keys, List<MenuNode> nodes) {
+        Map<String, MenuNode.Kind> current = new HashMap<>();
+        flatten("", nodes, current);
+
+        long changes = 0;
+        for (String key : current.keySet()) {
+            if (isChanged(key, current, keys)) changes++;
+        }
+        for (String key : keys.keySet()) {
+            if (!current.containsKey(key) && !isChanged(parent(key), current, keys)) changes++;
+        }
+
+        keys.clear();
+        keys.putAll(current);
+        return changes;
+    }
+
+    private static boolean isChanged(String key, Map<String, MenuNode.Kind> current, Map<String, MenuNode.Kind> previous) {
+        return key != null && current.get(key) != previous.get(key);
+    }
+
+    /**
+     * Retrieves path of the submenu holding entry of provided <b>key</b>, <b>null</b> for top entries
+     */
+    private static String parent(String key) {
+        int end = key.lastIndexOf('\n');
+        return end == -1 ? null : key.substring(0, end);
+    }
+
+    private static void flatten(String prefix, List<MenuNode> nodes, Map<String, MenuNode.Kind> into) {
+        for (MenuNode node : nodes) {
+            into.put(prefix + node.key, node.kind);
+            if (node.kind == MenuNode.Kind.MENU) flatten(prefix + node.key + "\n", node.children, into);
+        }
+    }
+
+    private static long max(List<Sample> samples, Field field) {
+        long max = 0;
+        for (Sample sample : samples) max = Math.max(max, field.of(sample));
+        return max;
+    }
+
+    private interface Field {
+        long of(Sample sample);
+    }
+
+    private static class Sample {
+        int cycle;
+        long heap;
+        int live;
+        int tree;
+        int leaked;
+        long p50;
+        long p99;
+        long ops;
+        long changes;
+        long worstOps;
+        long worstChanges;
+    }
+
+    /**
+     * Reconciler remembering discarded entries weakly, to check they become collectable
+     */
+    private static class TrackingReconciler extends StandInMenu.Reconciler {
+        private final List<WeakReference<StandInMenu>> discarded = new ArrayList<>();
+
+        @Override
+        protected void discard(StandInMenu entry) {
+            super.discard(entry);
+            discarded.add(new WeakReference<>(entry));
+        }
+
+        /**
+         * Forgets collected entries
+         * @return amount of discarded entries that are still reachable
+         */
+        int uncollected() {
+            discarded.removeIf(reference -> reference.get() == null);
+            return discarded.size();
+        }
+    }
+}
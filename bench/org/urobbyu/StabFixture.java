@@ -0,0 +1,112 @@
+package org.urobbyu;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Generates <b>SoundVolumeView.exe /stab</b> output and serves it as <b>AudioBackend</b>
+ */
+public class StabFixture implements AudioBackend {
+    private static final String[] COLUMNS = {
+        "Name", "Type", "Direction", "Device Name", "Default", "Default Multimedia", "Default Communications",
+        "Device State", "Muted", "Volume dB", "Volume Percent", "Min Volume dB", "Max Volume dB", "Volume Step",
+        "Channels Count", "Channels dB", "Channels Percent", "Item ID", "Command-Line Friendly ID",
+        "Process Path", "Process ID", "Window Title", "Registry Key", "Speakers Config"
+    };
+
+    private final byte[] table;
+    private final StabReader reader = new StabReader();
+
+    /**
+     * @param rows amount of rows excluding the header
+     * @param seed seed of generated values
+     */
+    public StabFixture(int rows, long seed) {
+        Random random = new Random(seed);
+        int devices = Math.min(16, Math.max(2, rows / 20));
+        StringBuilder out = new StringBuilder(rows * 400);
+
+        out.append('\uFEFF').append(String.join("\t", COLUMNS)).append("\r\n");
+
+        for (int i = 0; i < rows; i++) {
+            String[] row = new String[COLUMNS.length];
+            Arrays.fill(row, "");
+            boolean render = random.nextInt(10) != 0;
+            int device = random.nextInt(devices);
+            String itemId = String.format("{0.0.%d.00000000}.{%08x-1111-2222-3333-%012x}", render ? 0 : 1, device, seed);
+
+            row[2] = render ? "Render" : "Capture";
+            row[3] = "Fake Audio Device " + device;
+            row[8] = random.nextBoolean() ? "Yes" : "No";
+            row[9] = "-12.50 dB";
+            row[10] = "42.0%";
+            row[14] = "2";
+
+            if (i < devices) {
+                row[0] = "Speakers " + device;
+                row[1] = "Device";
+                row[7] = random.nextInt(4) == 0 ? "Disabled" : "Active";
+                row[17] = itemId;
+                row[18] = "Fake Audio Device " + device + "\\Device\\Speakers\\" + (render ? "Render" : "Capture");
+                row[22] = "HKEY_LOCAL_MACHINE\\SOFTWARE\\Microsoft\\Windows\\CurrentVersion\\MMDevices\\Audio\\" + row[2] + "\\" + itemId;
+            } else {
+                // Every fifth session belongs to an already listed process
+                int processId = 4000 + (random.nextInt(5) == 0 ? random.nextInt(i + 1) : i);
+                int app = random.nextInt(rows / 8 + 4);
+                row[0] = "app" + app + ".exe";
+                row[1] = "Application";
+                row[7] = "Active";
+                row[17] = itemId + "|\\Device\\HarddiskVolume3\\Program Files\\Fake\\app" + app + ".exe%b{00000000-0000-0000-0000-000000000000}";
+                row[18] = "Fake Audio Device " + device + "\\Device\\Speakers\\Render\\app" + app + ".exe";
+                row[19] = "C:\\Program Files\\Fake\\app" + app + ".exe";
+                row[20] = String.valueOf(processId);
+                row[21] = "Window of app" + app;
+            }
+
+            out.append(String.join("\t", row)).append("\r\n");
+        }
+        out.append("\r\n");
+
+        table = out.toString().getBytes(StandardCharsets.UTF_16LE);
+    }
+
+    /**
+     * Retrieves raw table
+     * @return stream of UTF-16LE encoded bytes
+     */
+    public InputStream open() {
+        return new ByteArrayInputStream(table);
+    }
+
+    /**
+     * Retrieves <b>size</b> of raw table in bytes
+     * @return size
+     */
+    public int size() {
+        return table.length;
+    }
+
+    @Override
+    public synchronized void snapshot(InputDecoder.RowVisitor visitor) throws IOException {
+        reader.read(open(), visitor);
+    }
+
+    @Override
+    public void setAppDefault(String deviceID, String processID) {}
+
+    @Override
+    public void setAppVolume(String processID, int percent) {}
+
+    @Override
+    public void setDeviceVolume(String deviceID, int percent) {}
+
+    @Override
+    public void setMute(String processID, boolean mute) {}
+
+    @Override
+    public void openSettings(boolean settings) {}
+}
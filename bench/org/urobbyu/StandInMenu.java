@@ -0,0 +1,128 @@
+package org.urobbyu;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Headless stand-in of an AWT menu entry
+ */
+public class StandInMenu {
+    private static int live = 0;
+
+    final MenuNode.Kind kind;
+    final String name;
+    final List<StandInMenu> children = new ArrayList<>();
+    String label;
+    boolean enabled;
+    boolean checked;
+
+    StandInMenu(MenuNode.Kind kind, String name, String label) {
+        this.kind = kind;
+        this.name = name;
+        this.label = label;
+        live++;
+    }
+
+    /**
+     * Creates root container
+     * @return empty menu
+     */
+    public static StandInMenu root() {
+        return new StandInMenu(MenuNode.Kind.MENU, "root", "root");
+    }
+
+    /**
+     * Retrieves <b>amount</b> of created entries that weren't discarded yet
+     * @return amount
+     */
+    public static int live() {
+        return live;
+    }
+
+    /**
+     * Counts entries of the menu, including itself
+     * @return amount
+     */
+    int size() {
+        int size = 1;
+        for (StandInMenu child : children) size += child.size();
+        return size;
+    }
+
+    /**
+     * <b>MenuReconciler</b> working on stand-ins. Counts the calls, and the peers AWT would create for them:
+     * inserted entry gets peers for it's whole subtree, and inserting before the end re-adds every following entry
+     */
+    public static class Reconciler extends MenuReconciler<StandInMenu> {
+        int inserts = 0;
+        int removes = 0;
+        int creates = 0;
+        int peers = 0;
+
+        /**
+         * Sets every counter to zero
+         */
+        void resetCounters() {
+            inserts = 0;
+            removes = 0;
+            creates = 0;
+            peers = 0;
+        }
+
+        @Override
+        protected int count(StandInMenu container) {
+            return container.children.size();
+        }
+
+        @Override
+        protected StandInMenu child(StandInMenu container, int index) {
+            return container.children.get(index);
+        }
+
+        @Override
+        protected String keyOf(StandInMenu entry) {
+            return entry.name;
+        }
+
+        @Override
+        protected boolean matches(StandInMenu entry, MenuNode node) {
+            return entry.kind == node.kind;
+        }
+
+        @Override
+        protected StandInMenu create(MenuNode node) {
+            creates++;
+            StandInMenu entry = new StandInMenu(node.kind, node.key, node.label);
+            entry.enabled = node.enabled;
+            entry.checked = node.checked;
+            return entry;
+        }
+
+        @Override
+        protected void update(StandInMenu entry, MenuNode node) {
+            if (!node.label.equals(entry.label)) entry.label = node.label;
+            entry.enabled = node.enabled;
+            entry.checked = node.checked;
+        }
+
+        @Override
+        protected void insert(StandInMenu container, StandInMenu entry, int index) {
+            inserts++;
+            peers += entry.size();
+            for (int i = index; i < container.children.size(); i++) peers += container.children.get(i).size();
+            container.children.add(index, entry);
+        }
+
+        @Override
+        protected void remove(StandInMenu container, StandInMenu entry) {
+            removes++;
+            container.children.remove(entry);
+        }
+
+        @Override
+        protected void discard(StandInMenu entry) {
+            for (StandInMenu child : entry.children) discard(child);
+            live--;
+        }
+    }
+}
@@ -0,0 +1,260 @@
+package org.urobbyu;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Checks of <b>ProcessSupervisor</b> against <b>FakeTool</b> children: killing on timeout together with descendants,
+ * stderr of failed children, the limit of running children and the circuit breaker opening, letting one trial
+ * through and opening again. Every check prints it's result and the run exits with 1 if any of them failed.
+ * <p>
+ * Children are JVMs, so deadlines leave room for their start, scaled by <b>supervisor.slack</b> (1.0)
+ */
+public class SupervisorCheck {
+    private static final double slack = Double.parseDouble(System.getProperty("supervisor.slack", "1.0"));
+    private static final ExecutorService callers = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "Supervisor Caller");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static final List<String> failures = new ArrayList<>();
+
+    /**
+     * Start of the checks
+     * @param args unused
+     */
+    public static void main(String[] args) throws Exception {
+        timeout();
+        exitCode();
+        concurrency();
+        queueTimeout();
+        breaker();
+        trialGivenBack();
+        brokenOutput();
+
+        for (String failure : failures) System.out.println("FAIL " + failure);
+        if (failures.isEmpty()) System.out.println("PASS");
+        System.exit(failures.isEmpty() ? 0 : 1);
+    }
+
+    /**
+     * Child outliving it's deadline is killed together with it's own child
+     */
+    private static void timeout() throws Exception {
+        ProcessSupervisor supervisor = new ProcessSupervisor(2, 3);
+        AtomicLong grandchild = new AtomicLong(-1);
+        long timeout = millis(3000);
+
+        long start = System.nanoTime();
+        String error = error(() -> supervisor.run(timeout, in -> {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(in));
+            String pid = reader.readLine();
+            if (pid != null) grandchild.set(Long.parseLong(pid.trim()));
+            reader.transferTo(Writer.nullWriter());
+        }, FakeTool.command("spawn", "60000")));
+        long elapsed = (System.nanoTime() - start) / 1_000_000;
+
+        check("timeout", error != null && error.contains("timed out"), "expected timeout, got " + error);
+        check("timeout", elapsed < timeout + millis(2000), "took " + elapsed + " ms with deadline of " + timeout + " ms");
+        check("timeout", grandchild.get() > 0, "child didn't report it's own child");
+
+        // Killed process may take a moment to disappear
+        Thread.sleep(500);
+        check("timeout", !isRunning(grandchild.get()), "child of the killed child is still running");
+        report("timeout", "killed after " + elapsed + " ms");
+    }
+
+    /**
+     * Non-zero exit is a failure carrying the child's stderr
+     */
+    private static void exitCode() {
+        ProcessSupervisor supervisor = new ProcessSupervisor(2, 3);
+        String error = error(() -> supervisor.run(millis(10000), FakeTool.command("fail", "3", "no such device")));
+
+        check("exit code", error != null && error.contains("exited with code 3"), "expected exit code 3, got " + error);
+        check("exit code", error != null && error.contains("no such device"), "stderr missing from " + error);
+        report("exit code", error);
+    }
+
+    /**
+     * No more than <b>concurrency</b> children run at the same time
+     */
+    private static void concurrency() throws Exception {
+        ProcessSupervisor supervisor = new ProcessSupervisor(2, 3);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+
+        List<Future<String>> calls = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            calls.add(callers.submit(() -> error(() -> supervisor.run(millis(30000), in -> {
+                // Output ends when the child exits, before it's slot is freed
+                peak.accumulateAndGet(running.incrementAndGet(), Math::max);
+                try {
+                    in.transferTo(OutputStream.nullOutputStream());
+                } finally {
+                    running.decrementAndGet();
+                }
+            }, FakeTool.command("sleep", "400")))));
+        }
+        for (Future<String> call : calls) check("concurrency", call.get() == null, "call failed: " + call.get());
+
+        check("concurrency", peak.get() == 2, "peak of " + peak.get() + " running children with limit of 2");
+        report("concurrency", "peak of " + peak.get() + " running children");
+    }
+
+    /**
+     * Call giving up on a free slot fails without counting against the tool
+     */
+    private static void queueTimeout() throws Exception {
+        ProcessSupervisor supervisor = new ProcessSupervisor(1, 1);
+        Future<String> holder = callers.submit(() -> error(() -> supervisor.run(millis(10000), FakeTool.command("sleep", "2000"))));
+        Thread.sleep(millis(500));
+
+        String error = error(() -> supervisor.run(300, FakeTool.command("sleep", "0")));
+        check("queue timeout", error != null && error.contains("gave up waiting"), "expected wait to time out, got " + error);
+        check("queue timeout", holder.get() == null, "holder failed: " + holder.get());
+
+        error = error(() -> supervisor.run(millis(10000), FakeTool.command("sleep", "0")));
+        check("queue timeout", error == null, "circuit opened after a call that never ran: " + error);
+        report("queue timeout", "gave up waiting, circuit stayed closed");
+    }
+
+    /**
+     * Consecutive failures open the circuit, after the delay one trial is let through at a time
+     */
+    private static void breaker() throws Exception {
+        ProcessSupervisor supervisor = new ProcessSupervisor(2, 3);
+        for (int i = 0; i < 3; i++) fail(supervisor);
+
+        long start = System.nanoTime();
+        String error = error(() -> supervisor.run(millis(10000), FakeTool.command("sleep", "0")));
+        long elapsed = (System.nanoTime() - start) / 1_000_000;
+        check("breaker", error != null && error.contains("keeps failing"), "expected open circuit, got " + error);
+        check("breaker", elapsed < 100, "open circuit took " + elapsed + " ms to fail");
+
+        // Half open: the trial runs, everything else still fails fast until it ends
+        Thread.sleep(1200);
+        Future<String> trial = callers.submit(() -> error(() -> supervisor.run(millis(10000), FakeTool.command("sleep", "1500"))));
+        Thread.sleep(500);
+        error = error(() -> supervisor.run(millis(10000), FakeTool.command("sleep", "0")));
+        check("breaker", error != null && error.contains("keeps failing"), "second call ran next to the trial: " + error);
+        check("breaker", trial.get() == null, "trial failed: " + trial.get());
+
+        error = error(() -> supervisor.run(millis(10000), FakeTool.command("sleep", "0")));
+        check("breaker", error == null, "circuit stayed open after successful trial: " + error);
+
+        // Failed trial opens the circuit again for twice as long
+        for (int i = 0; i < 3; i++) fail(supervisor);
+        Thread.sleep(1200);
+        fail(supervisor);
+        Thread.sleep(1200);
+        error = error(() -> supervisor.run(millis(10000), FakeTool.command("sleep", "0")));
+        check("breaker", error != null && error.contains("keeps failing"), "circuit closed before the longer delay: " + error);
+        report("breaker", "opened, closed after trial, reopened after failed trial");
+    }
+
+    /**
+     * Trial that never got a slot is given back, so the next call becomes the trial instead of failing fast
+     */
+    private static void trialGivenBack() throws Exception {
+        ProcessSupervisor supervisor = new ProcessSupervisor(2, 1);
+        // Both slots stay busy while the circuit opens: one by a long call, the other by a call queued before the failure
+        Future<String> first = callers.submit(() -> error(() -> supervisor.run(millis(10000), FakeTool.command("sleep", "4000"))));
+        Future<String> failing = callers.submit(() -> error(() -> supervisor.run(millis(10000), FakeTool.command("fail", "1", "broken"))));
+        // Queued before the failing child can even start
+        Thread.sleep(50);
+        Future<String> second = callers.submit(() -> error(() -> supervisor.run(millis(10000), FakeTool.command("sleep", "4000"))));
+        check("trial", failing.get() != null, "failing call succeeded");
+
+        Thread.sleep(1200);
+        for (int i = 0; i < 2; i++) {
+            String error = error(() -> supervisor.run(300, FakeTool.command("sleep", "0")));
+            check("trial", error != null && error.contains("gave up waiting"), "trial " + (i + 1) + " wasn't let through: " + error);
+        }
+        check("trial", first.get() == null && second.get() == null, "long calls failed");
+        report("trial", "trial was given back after waiting for a slot");
+    }
+
+    /**
+     * Unchecked exception of the output consumer kills the child and ends the trial as a failure
+     */
+    private static void brokenOutput() throws Exception {
+        ProcessSupervisor supervisor = new ProcessSupervisor(2, 1);
+        fail(supervisor);
+        Thread.sleep(1200);
+
+        AtomicLong grandchild = new AtomicLong(-1);
+        long start = System.nanoTime();
+        String error;
+        try {
+            supervisor.run(millis(30000), in -> {
+                grandchild.set(Long.parseLong(new BufferedReader(new InputStreamReader(in)).readLine().trim()));
+                throw new IllegalStateException("broken visitor");
+            }, FakeTool.command("spawn", "60000"));
+            error = null;
+        } catch (IllegalStateException e) {
+            error = e.getMessage();
+        }
+        long elapsed = (System.nanoTime() - start) / 1_000_000;
+        check("broken output", "broken visitor".equals(error), "expected the consumer's exception, got " + error);
+        check("broken output", elapsed < millis(10000), "took " + elapsed + " ms, child wasn't killed");
+
+        Thread.sleep(500);
+        check("broken output", grandchild.get() > 0 && !isRunning(grandchild.get()), "child of the abandoned child is still running");
+
+        // Failed trial doubled the delay, after it the tool is tried again
+        Thread.sleep(2200);
+        error = error(() -> supervisor.run(millis(10000), FakeTool.command("sleep", "0")));
+        check("broken output", error == null, "circuit stayed open after the failed trial: " + error);
+        report("broken output", "child killed after " + elapsed + " ms, trial ended");
+    }
+
+    /**
+     * Checks if the process still runs. Orphan that was killed stays a zombie until something reaps it, it has no command
+     */
+    private static boolean isRunning(long pid) {
+        return ProcessHandle.of(pid).filter(ProcessHandle::isAlive).flatMap(process -> process.info().command()).isPresent();
+    }
+
+    private static void fail(ProcessSupervisor supervisor) {
+        String error = error(() -> supervisor.run(millis(10000), FakeTool.command("fail", "1", "broken")));
+        check("breaker", error != null && error.contains("exited with code 1"), "expected failure, got " + error);
+    }
+
+    /**
+     * Runs <b>call</b>
+     * @return error message, <b>null</b> if it succeeded
+     */
+    private static String error(Call call) {
+        try {
+            call.run();
+            return null;
+        } catch (IOException e) {
+            return e.getMessage();
+        }
+    }
+
+    private static long millis(long millis) {
+        return (long) (millis * slack);
+    }
+
+    private static void check(String name, boolean condition, String message) {
+        if (!condition) failures.add(name + ": " + message);
+    }
+
+    private static void report(String name, String result) {
+        System.out.printf("%-14s %s%n", name, result);
+    }
+
+    private interface Call {
+        void run() throws IOException;
+    }
+}
@@ -0,0 +1,3 @@
+rmdir /q /s out\bench
+javac -cp out\production\SoundMenu -d out\bench bench\org\urobbyu\*.java
+java -Djava.awt.headless=true -cp out\production\SoundMenu;out\bench org.urobbyu.Benchmarks %*
\ No newline at end of file
@@ -1,4 +1,7 @@
 module SoundMenu {
     requires java.base;
     requires java.desktop;
+    requires java.management;
+
+    exports org.urobbyu to java.management;
 }
\ No newline at end of file
@@ -0,0 +1,104 @@
+package org.urobbyu;
+
+import java.io.IOException;
+
+/**
+ * Source of audio sessions and devices and receiver of audio commands
+ */
+public interface AudioBackend {
+
+    /**
+     * Pushes every application session and device to the <b>visitor</b>
+     * @param visitor row consumer
+     * @throws IOException thrown if snapshot can't be taken
+     */
+    void snapshot(InputDecoder.RowVisitor visitor) throws IOException;
+
+    /**
+     * Changes current playback device for the app with provided <b>processID</b>
+     * @param deviceID  ID of the sound output device
+     * @param processID system ID of the process
+     * @throws IOException thrown if command can't be executed
+     */
+    void setAppDefault(String deviceID, String processID) throws IOException;
+
+    /**
+     * Mutes and unmutes the app with provided <b>processID</b>
+     * @param processID system ID of the process
+     * @param mute      T - Mute, F - Unmute
+     * @throws IOException thrown if command can't be executed
+     */
+    void setMute(String processID, boolean mute) throws IOException;
+
+    /**
+     * Changes volume of the app with provided <b>processID</b>
+     * @param processID system ID of the process
+     * @param percent   volume from 0 to 100
+     * @throws IOException thrown if command can't be executed
+     */
+    void setAppVolume(String processID, int percent) throws IOException;
+
+    /**
+     * Changes master volume of the device with provided <b>deviceID</b>
+     * @param deviceID ID of the sound output device
+     * @param percent  volume from 0 to 100
+     * @throws IOException thrown if command can't be executed
+     */
+    void setDeviceVolume(String deviceID, int percent) throws IOException;
+
+    /**
+     * Opens <b>System Apps Volume Settings</b> or <b>SoundVolumeView App</b>
+     * @param settings T - <b>System Apps Volume Settings</b>, F - <b>SoundVolumeView App</b>
+     * @throws IOException thrown if app can't be opened
+     */
+    void openSettings(boolean settings) throws IOException;
+
+    /**
+     * Drops whatever the backend has cached, so the next snapshot is taken from the system
+     */
+    default void invalidate() {}
+
+    /**
+     * Sets action performed when backend notices a change on it's own
+     * @param listener action, called from backend's thread
+     */
+    default void setChangeListener(Runnable listener) {}
+
+    /**
+     * Checks if backend reports changes through the change listener, so polling is only a fallback
+     * @return T - backend pushes changes
+     */
+    default boolean isPushing() {
+        return false;
+    }
+
+    /**
+     * Releases resources held by the backend
+     */
+    default void close() {}
+
+    /**
+     * Creates backend selected by <b>soundmenu.backend</b> system property.
+     * <b>fake</b> selects in-memory backend, replacing one process every <b>soundmenu.fake.churn</b> milliseconds if it's set, <b>helper</b> selects long-running helper process,
+     * anything else selects <b>SoundVolumeView</b>
+     * @return backend
+     */
+    static AudioBackend create() {
+        switch (System.getProperty("soundmenu.backend", "")) {
+            case "fake":
+                FakeAudioBackend fake = new FakeAudioBackend(
+                    Integer.getInteger("soundmenu.fake.sessions", 20),
+                    Integer.getInteger("soundmenu.fake.devices", 4),
+                    Long.getLong("soundmenu.fake.latency", 0L),
+                    Long.getLong("soundmenu.fake.seed", 0L)
+                );
+                long churn = Long.getLong("soundmenu.fake.churn", 0L);
+                if (churn > 0) fake.startChurn(churn);
+                return fake;
+            case "helper":
+                return new HelperBackend(HelperBackend.defaultCommand());
+            default:
+                return new SoundVolumeViewBackend();
+        }
+    }
+}
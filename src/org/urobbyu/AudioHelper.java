@@ -0,0 +1,177 @@
+package org.urobbyu;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Helper process serving <b>AudioBackend</b> selected by <b>soundmenu.backend</b> to <b>HelperBackend</b>.
+ * <p>
+ * Takes snapshot every <b>soundmenu.helper.poll</b> milliseconds (60000 by default, the longest refresh interval)
+ * and pushes <b>CHANGED</b> event when it differs from the previous one. <b>SNAPSHOT</b> requests are answered
+ * from the last snapshot, which is only taken again after commands changed something. <b>SNAPSHOT fresh</b> always takes a new one
+ * @see HelperBackend
+ */
+public class AudioHelper {
+    private final AudioBackend backend;
+    private final Writer out;
+    private final ExecutorService workers = Executors.newFixedThreadPool(2, r -> {
+        Thread thread = new Thread(r, "Helper Worker");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // Amount of commands run so far, the last snapshot is current if none ran since it was taken
+    private final AtomicInteger commands = new AtomicInteger();
+    private AudioSnapshot last = null;
+    private int lastCommands = -1;
+
+    AudioHelper(AudioBackend backend, OutputStream out) {
+        this.backend = backend;
+        this.out = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (System.getProperty("soundmenu.backend", "").equals("helper"))
+            System.setProperty("soundmenu.backend", "");
+
+        AudioHelper helper = new AudioHelper(AudioBackend.create(), System.out);
+        helper.startPolling(Long.getLong("soundmenu.helper.poll", 60_000L));
+        helper.serve(System.in);
+    }
+
+    /**
+     * Answers requests until <b>in</b> is closed
+     * @param in request stream
+     * @throws IOException thrown if requests can't be read
+     */
+    void serve(InputStream in) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            String[] request = line.split("\t", -1);
+            if (request.length < 2) continue;
+            workers.execute(() -> handle(request));
+        }
+        workers.shutdownNow();
+    }
+
+    private void startPolling(long period) {
+        Thread poller = new Thread(() -> {
+            while (true) {
+                try {
+                    Thread.sleep(period);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                poll();
+            }
+        }, "Helper Poller");
+        poller.setDaemon(true);
+        poller.start();
+    }
+
+    /**
+     * Takes snapshot and pushes <b>CHANGED</b> event if it differs from the previous one
+     */
+    private void poll() {
+        int seen = commands.get();
+        AudioSnapshot snapshot;
+        try {
+            snapshot = take();
+        } catch (IOException e) {
+            return;
+        }
+
+        boolean changed;
+        synchronized (this) {
+            changed = last != null && !last.equals(snapshot);
+            last = snapshot;
+            lastCommands = seen;
+        }
+        if (changed) write("*", "CHANGED", "session");
+    }
+
+    /**
+     * Retrieves the last snapshot, taking it again only if commands ran since.
+     * Concurrent requests wait for one snapshot instead of taking their own
+     * @param fresh T - snapshot is taken again in any case
+     */
+    private synchronized AudioSnapshot current(boolean fresh) throws IOException {
+        int seen = commands.get();
+        if (fresh || last == null || lastCommands != seen) {
+            last = take();
+            lastCommands = seen;
+        }
+        return last;
+    }
+
+    private AudioSnapshot take() throws IOException {
+        AudioSnapshot.Builder builder = new AudioSnapshot.Builder();
+        backend.snapshot(builder);
+        return builder.build();
+    }
+
+    private void handle(String[] request) {
+        String id = request[0];
+        try {
+            switch (request[1]) {
+                case "SNAPSHOT": {
+                    // Device ID is sent as item ID, cutting it again keeps it as is
+                    AudioSnapshot snapshot = current(request.length > 2 && request[2].equals("fresh"));
+                    for (AudioSnapshot.Device device : snapshot.devices())
+                        write(id, "DEVICE", device.name, device.itemId, device.subName, volume(device.volume));
+                    for (AudioSnapshot.Session session : snapshot.sessions())
+                        write(id, "APP", session.name, session.muted ? "Yes" : "No", session.processId, session.processPath, session.deviceId, volume(session.volume));
+                    break;
+                }
+                case "SETDEFAULT":
+                    backend.setAppDefault(request[2], request[3]);
+                    break;
+                case "MUTE":
+                    backend.setMute(request[2], request[3].equals("1"));
+                    break;
+                case "VOLUME":
+                    if (request[2].equals("app")) backend.setAppVolume(request[3], Integer.parseInt(request[4]));
+                    else backend.setDeviceVolume(request[3], Integer.parseInt(request[4]));
+                    break;
+                case "OPEN":
+                    backend.openSettings(request[2].equals("settings"));
+                    break;
+                default:
+                    throw new IOException("Unknown request " + request[1]);
+            }
+            counted(request);
+            write(id, "OK");
+        } catch (IOException | RuntimeException e) {
+            counted(request);
+            write(id, "ERR", String.valueOf(e.getMessage()).replace('\t', ' ').replace('\n', ' '));
+        }
+    }
+
+    /**
+     * Counts finished command before it's answered, so neither snapshots taken while it ran
+     * nor the ones taken before are reused by the following requests
+     */
+    private void counted(String[] request) {
+        if (request[1].equals("SETDEFAULT") || request[1].equals("MUTE") || request[1].equals("VOLUME")) commands.incrementAndGet();
+    }
+
+    private static String volume(int volume) {
+        return volume == -1 ? "" : volume + "%";
+    }
+
+    /**
+     * Writes one message as a line, so lines of concurrent answers never mix
+     */
+    private synchronized void write(String... message) {
+        try {
+            out.write(String.join("\t", message));
+            out.write('\n');
+            out.flush();
+        } catch (IOException e) {
+            System.exit(0);
+        }
+    }
+}
@@ -0,0 +1,271 @@
+package org.urobbyu;
+
+import java.util.*;
+
+/**
+ * Immutable set of application sessions and output devices taken by one reload.
+ * Sessions and devices are indexed by <b>process ID</b>, <b>process path</b> and <b>Item ID</b>
+ */
+public final class AudioSnapshot {
+    public static final AudioSnapshot EMPTY = new Builder().build();
+
+    private final List<Session> sessions;
+    private final List<Device> devices;
+    private final Map<String, Session> byProcessId;
+    private final Map<String, Session> byProcessPath;
+    private final Map<String, Device> byItemId;
+
+    private AudioSnapshot(List<Session> sessions, List<Device> devices) {
+        this.sessions = Collections.unmodifiableList(sessions);
+        this.devices = Collections.unmodifiableList(devices);
+
+        Map<String, Session> byProcessId = new HashMap<>(sessions.size() * 2);
+        Map<String, Session> byProcessPath = new HashMap<>(sessions.size() * 2);
+        for (Session session : sessions) {
+            byProcessId.put(session.processId, session);
+            byProcessPath.putIfAbsent(session.processPath, session);
+        }
+
+        Map<String, Device> byItemId = new HashMap<>(devices.size() * 2);
+        for (Device device : devices) byItemId.putIfAbsent(device.itemId, device);
+
+        this.byProcessId = byProcessId;
+        this.byProcessPath = byProcessPath;
+        this.byItemId = byItemId;
+    }
+
+    /**
+     * Creates snapshot of provided sessions and devices
+     * @param sessions sessions, one per process
+     * @param devices  devices
+     * @return snapshot
+     */
+    static AudioSnapshot of(List<Session> sessions, List<Device> devices) {
+        return new AudioSnapshot(new ArrayList<>(sessions), new ArrayList<>(devices));
+    }
+
+    /**
+     * Retrieves every application session, one per process
+     * @return sessions
+     */
+    public List<Session> sessions() {
+        return sessions;
+    }
+
+    /**
+     * Retrieves every active output device
+     * @return devices
+     */
+    public List<Device> devices() {
+        return devices;
+    }
+
+    /**
+     * Searches for session of the process with provided <b>processID</b>
+     * @param processID system ID of the process
+     * @return session or <b>null</b>
+     */
+    public Session session(String processID) {
+        return byProcessId.get(processID);
+    }
+
+    /**
+     * Searches for the first session of the process with provided <b>processPath</b>
+     * @param processPath path of the executable
+     * @return session or <b>null</b>
+     */
+    public Session sessionOf(String processPath) {
+        return byProcessPath.get(processPath);
+    }
+
+    /**
+     * Searches for device with provided <b>itemID</b>
+     * @param itemID ID of the sound output device
+     * @return device or <b>null</b>
+     */
+    public Device device(String itemID) {
+        return byItemId.get(itemID);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof AudioSnapshot)) return false;
+        AudioSnapshot that = (AudioSnapshot) o;
+        return sessions.equals(that.sessions) && devices.equals(that.devices);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * sessions.hashCode() + devices.hashCode();
+    }
+
+    /**
+     * Application session
+     */
+    public static final class Session {
+        public final String name;
+        public final boolean muted;
+        public final String processId;
+        public final String processPath;
+        public final String deviceId;
+        /** Volume in percent, -1 if unknown */
+        public final int volume;
+        /** T - restored from the cache, but the process is gone */
+        public final boolean stale;
+
+        Session(String name, boolean muted, String processId, String processPath, String deviceId, int volume) {
+            this(name, muted, processId, processPath, deviceId, volume, false);
+        }
+
+        Session(String name, boolean muted, String processId, String processPath, String deviceId, int volume, boolean stale) {
+            this.name = name;
+            this.muted = muted;
+            this.processId = processId;
+            this.processPath = processPath;
+            this.deviceId = deviceId;
+            this.volume = volume;
+            this.stale = stale;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Session)) return false;
+            Session that = (Session) o;
+            return muted == that.muted && volume == that.volume && stale == that.stale && name.equals(that.name) && processId.equals(that.processId) && processPath.equals(that.processPath) && deviceId.equals(that.deviceId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(name, muted, processId, processPath, deviceId, volume, stale);
+        }
+    }
+
+    /**
+     * Output device
+     */
+    public static final class Device {
+        public final String name;
+        public final String itemId;
+        public final String subName;
+        /** Master volume in percent, -1 if unknown */
+        public final int volume;
+
+        Device(String name, String itemId, String subName, int volume) {
+            this.name = name;
+            this.itemId = itemId;
+            this.subName = subName;
+            this.volume = volume;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Device)) return false;
+            Device that = (Device) o;
+            return volume == that.volume && name.equals(that.name) && itemId.equals(that.itemId) && subName.equals(that.subName);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(name, itemId, subName, volume);
+        }
+    }
+
+    /**
+     * Collects decoded rows into a snapshot.
+     * Processes with several sessions are listed once with <b>undefined</b> device
+     */
+    public static class Builder implements InputDecoder.RowVisitor {
+        private final Map<String, Session> sessions = new LinkedHashMap<>();
+        private final List<Device> devices = new ArrayList<>();
+        private final long previous;
+        private final SymbolTable symbols;
+        private long fingerprint = 0;
+        private boolean unchanged = false;
+
+        public Builder() {
+            this(0);
+        }
+
+        /**
+         * @param previous fingerprint of the last snapshot, rows with the same one are skipped. 0 - none
+         */
+        public Builder(long previous) {
+            this(previous, null);
+        }
+
+        /**
+         * @param previous fingerprint of the last snapshot, rows with the same one are skipped. 0 - none
+         * @param symbols  table of canonical device IDs cut from session item IDs. <b>null</b> - none
+         */
+        public Builder(long previous, SymbolTable symbols) {
+            this.previous = previous;
+            this.symbols = symbols;
+        }
+
+        @Override
+        public boolean fingerprint(long fingerprint) {
+            this.fingerprint = fingerprint;
+            unchanged = previous != 0 && fingerprint == previous;
+            return !unchanged;
+        }
+
+        /**
+         * Checks if rows were skipped because raw output didn't change
+         * @return T - nothing changed since the last snapshot
+         */
+        public boolean isUnchanged() {
+            return unchanged;
+        }
+
+        /**
+         * Retrieves fingerprint reported by the source
+         * @return fingerprint, 0 if source doesn't report one
+         */
+        public long getFingerprint() {
+            return fingerprint;
+        }
+
+        @Override
+        public void app(String name, boolean muted, String processId, String processPath, String itemId, String volume) {
+            Session session = sessions.get(processId);
+            if (session != null) {
+                if (!session.deviceId.equals("undefined"))
+                    sessions.put(processId, new Session(session.name, session.muted, session.processId, session.processPath, "undefined", session.volume));
+            } else {
+                int end = itemId.indexOf('|');
+                String deviceId = symbols != null ? symbols.intern(itemId, 0, end == -1 ? itemId.length() : end) : end == -1 ? itemId : itemId.substring(0, end);
+                sessions.put(processId, new Session(name, muted, processId, processPath, deviceId, percent(volume)));
+            }
+        }
+
+        @Override
+        public void device(String name, String itemId, String deviceName, String volume) {
+            devices.add(new Device(name, itemId, deviceName, percent(volume)));
+        }
+
+        /**
+         * Parses volume like <b>42.5%</b>, or <b>42,5%</b> as written with a comma decimal separator
+         * @return rounded percent, -1 if <b>volume</b> is empty or malformed
+         */
+        private static int percent(String volume) {
+            int end = volume.endsWith("%") ? volume.length() - 1 : volume.length();
+            if (end == 0) return -1;
+            try {
+                return (int) Math.round(Double.parseDouble(volume.substring(0, end).replace(',', '.')));
+            } catch (NumberFormatException e) {
+                return -1;
+            }
+        }
+
+        /**
+         * Creates snapshot of collected rows
+         * @return snapshot
+         */
+        public AudioSnapshot build() {
+            return new AudioSnapshot(new ArrayList<>(sessions.values()), new ArrayList<>(devices));
+        }
+    }
+}
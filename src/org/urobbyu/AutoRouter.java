@@ -0,0 +1,107 @@
+package org.urobbyu;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Routes newly appeared processes to their favorite device.
+ * Only apps with exactly one favorite device are routed.
+ * Processes that fail to switch are retried by later snapshots with growing delay
+ */
+public class AutoRouter {
+    private static final long FIRST_RETRY = 5_000_000_000L;
+    private static final long LAST_RETRY = 300_000_000_000L;
+
+    private final FavoritesStore favorites;
+    private final CommandQueue commandQueue;
+    private final AudioBackend backend;
+    // Failed processes by process ID, only touched under the lock
+    private final Map<String, Failure> failures = new HashMap<>();
+
+    /**
+     * @param favorites    favorite app and device pairs
+     * @param commandQueue queue running the switches
+     * @param backend      receiver of the switches
+     */
+    AutoRouter(FavoritesStore favorites, CommandQueue commandQueue, AudioBackend backend) {
+        this.favorites = favorites;
+        this.commandQueue = commandQueue;
+        this.backend = backend;
+    }
+
+    /**
+     * Routes sessions of <b>next</b> snapshot that <b>previous</b> one doesn't have, and retries failed ones that are due
+     * @param previous snapshot the menus were built from
+     * @param next     new snapshot
+     */
+    public void route(AudioSnapshot previous, AudioSnapshot next) {
+        for (AudioSnapshot.Session session : next.sessions()) {
+            AudioSnapshot.Session old = previous.session(session.processId);
+            if (old == null || old.stale) route(session);
+        }
+
+        retry(next);
+    }
+
+    private synchronized void retry(AudioSnapshot next) {
+        if (failures.isEmpty()) return;
+
+        long now = System.nanoTime();
+        for (Iterator<Map.Entry<String, Failure>> i = failures.entrySet().iterator(); i.hasNext(); ) {
+            Map.Entry<String, Failure> failure = i.next();
+            AudioSnapshot.Session session = next.session(failure.getKey());
+
+            // Process is gone, so is it's failure
+            if (session == null) i.remove();
+            else if (!failure.getValue().isPending && now - failure.getValue().next >= 0) route(session);
+        }
+    }
+
+    private synchronized void route(AudioSnapshot.Session session) {
+        Set<String> devices = favorites.devices(session.processPath);
+        if (devices.size() != 1) return;
+
+        String device = devices.iterator().next();
+        if (device.equals(session.deviceId)) {
+            failures.remove(session.processId);
+            return;
+        }
+
+        Failure failure = failures.get(session.processId);
+        if (failure != null) {
+            if (failure.isPending || System.nanoTime() - failure.next < 0) return;
+            failure.isPending = true;
+        }
+
+        String processId = session.processId;
+        commandQueue.submit("device:" + processId, () -> {
+            try {
+                backend.setAppDefault(device, processId);
+                succeeded(processId);
+            } catch (IOException e) {
+                failed(processId);
+                throw e;
+            }
+        });
+    }
+
+    private synchronized void succeeded(String processId) {
+        failures.remove(processId);
+    }
+
+    private synchronized void failed(String processId) {
+        Failure failure = failures.computeIfAbsent(processId, k -> new Failure());
+        failure.delay = failure.delay == 0 ? FIRST_RETRY : Math.min(failure.delay * 2, LAST_RETRY);
+        failure.next = System.nanoTime() + failure.delay;
+        failure.isPending = false;
+    }
+
+    private static class Failure {
+        long delay = 0;
+        long next;
+        boolean isPending = false;
+    }
+}
@@ -0,0 +1,145 @@
+package org.urobbyu;
+
+import java.awt.*;
+import java.awt.event.ActionListener;
+import java.awt.event.ItemListener;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * <b>MenuReconciler</b> working on AWT menus.
+ * Every item reports clicks to one shared listener through it's action command,
+ * so entries of menus that left are pooled and reused as is
+ */
+public class AwtMenuReconciler extends MenuReconciler<MenuItem> {
+    private static final Font PLAIN_FONT = new Font(Font.DIALOG, Font.PLAIN, 12);
+    private static final int POOL_SIZE = 256;
+
+    private final ActionListener actionListener;
+    private final ItemListener itemListener;
+    private final Deque<MenuItem> itemPool = new ArrayDeque<>();
+    private final Deque<CheckboxMenuItem> checkboxPool = new ArrayDeque<>();
+    private final Deque<Menu> menuPool = new ArrayDeque<>();
+
+    /**
+     * @param actionListener receiver of item clicks
+     * @param itemListener   receiver of checkbox clicks
+     */
+    public AwtMenuReconciler(ActionListener actionListener, ItemListener itemListener) {
+        this.actionListener = actionListener;
+        this.itemListener = itemListener;
+    }
+
+    @Override
+    protected int count(MenuItem container) {
+        return ((Menu) container).getItemCount();
+    }
+
+    @Override
+    protected MenuItem child(MenuItem container, int index) {
+        return ((Menu) container).getItem(index);
+    }
+
+    @Override
+    protected String keyOf(MenuItem entry) {
+        return entry.getName();
+    }
+
+    @Override
+    protected boolean matches(MenuItem entry, MenuNode node) {
+        switch (node.kind) {
+            case MENU:
+                return entry instanceof Menu;
+            case CHECKBOX:
+                return entry instanceof CheckboxMenuItem;
+            case SEPARATOR:
+                return "-".equals(entry.getLabel());
+            default:
+                return !(entry instanceof Menu) && !(entry instanceof CheckboxMenuItem);
+        }
+    }
+
+    @Override
+    protected MenuItem create(MenuNode node) {
+        MenuItem entry;
+        switch (node.kind) {
+            case MENU:
+                entry = menuPool.poll();
+                if (entry == null) entry = new Menu();
+                break;
+            case CHECKBOX:
+                CheckboxMenuItem checkbox = checkboxPool.poll();
+                if (checkbox == null) {
+                    checkbox = new CheckboxMenuItem();
+                    checkbox.addItemListener(itemListener);
+                }
+                checkbox.setState(node.checked);
+                entry = checkbox;
+                break;
+            case SEPARATOR:
+                entry = new MenuItem("-");
+                break;
+            default:
+                entry = itemPool.poll();
+                if (entry == null) {
+                    entry = new MenuItem();
+                    entry.addActionListener(actionListener);
+                }
+        }
+
+        entry.setName(node.key);
+        if (node.kind != MenuNode.Kind.SEPARATOR) entry.setLabel(node.label);
+        if (node.command != null) entry.setActionCommand(node.command);
+        if (!node.enabled) entry.setEnabled(false);
+        if (node.plain) entry.setFont(PLAIN_FONT);
+        return entry;
+    }
+
+    @Override
+    protected void update(MenuItem entry, MenuNode node) {
+        if (!node.label.equals(entry.getLabel())) entry.setLabel(node.label);
+        if (node.enabled != entry.isEnabled()) entry.setEnabled(node.enabled);
+        if (node.kind == MenuNode.Kind.CHECKBOX && node.checked != ((CheckboxMenuItem) entry).getState())
+            ((CheckboxMenuItem) entry).setState(node.checked);
+        if (node.command != null && !node.command.equals(entry.getActionCommand())) entry.setActionCommand(node.command);
+    }
+
+    @Override
+    protected void insert(MenuItem container, MenuItem entry, int index) {
+        Menu menu = (Menu) container;
+        // Menu.insert() re-adds every following item, so appending is preferred
+        if (index >= menu.getItemCount()) menu.add(entry);
+        else menu.insert(entry, index);
+    }
+
+    @Override
+    protected void remove(MenuItem container, MenuItem entry) {
+        ((Menu) container).remove(entry);
+    }
+
+    @Override
+    protected void discard(MenuItem entry) {
+        if (entry instanceof Menu) {
+            Menu menu = (Menu) entry;
+            for (int i = menu.getItemCount() - 1; i >= 0; i--) {
+                MenuItem child = menu.getItem(i);
+                menu.remove(i);
+                discard(child);
+            }
+        }
+
+        if ("-".equals(entry.getLabel())) return;
+
+        // Clearing state that create() only sets when it differs from the default
+        entry.setEnabled(true);
+        entry.setFont(null);
+
+        if (entry instanceof Menu) offer(menuPool, (Menu) entry);
+        else if (entry instanceof CheckboxMenuItem) offer(checkboxPool, (CheckboxMenuItem) entry);
+        else offer(itemPool, entry);
+    }
+
+    private static <E> void offer(Deque<E> pool, E entry) {
+        if (pool.size() < POOL_SIZE) pool.push(entry);
+    }
+}
@@ -0,0 +1,115 @@
+package org.urobbyu;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs audio commands off the event thread, one at a time.
+ * Commands sharing a key collapse to the last one submitted and every finished batch is followed by one reload
+ */
+public class CommandQueue {
+    private final Map<String, Command> pending = new LinkedHashMap<>();
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "Commander");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Runnable reload;
+    private final Map<String, ScheduledFuture<?>> debounced = new HashMap<>();
+    private boolean scheduled = false;
+
+    /**
+     * @param reload action performed once after every batch of commands
+     */
+    CommandQueue(Runnable reload) {
+        this.reload = reload;
+    }
+
+    /**
+     * Queues <b>command</b>, replacing the not yet started command with the same <b>key</b>.
+     * Commands submitted after <b>shutdown()</b> are dropped
+     * @param key     intent of the command, e.g. <b>mute:PID</b>
+     * @param command command
+     */
+    public synchronized void submit(String key, Command command) {
+        if (executor.isShutdown()) return;
+
+        pending.remove(key);
+        pending.put(key, command);
+
+        if (!scheduled) {
+            scheduled = true;
+            executor.execute(this::drain);
+        }
+    }
+
+    /**
+     * Queues <b>command</b> once nothing with the same <b>key</b> was submitted for <b>delay</b> milliseconds.
+     * Every call restarts the delay and replaces the command, so rapid changes end up as the last one
+     * @param key     intent of the command, e.g. <b>volume:PID</b>
+     * @param delay   quiet time in milliseconds
+     * @param command command
+     */
+    public synchronized void debounce(String key, long delay, Command command) {
+        ScheduledFuture<?> previous = debounced.remove(key);
+        if (previous != null) previous.cancel(false);
+        if (executor.isShutdown()) return;
+
+        debounced.put(key, executor.schedule(() -> {
+            synchronized (this) {
+                debounced.remove(key);
+                submit(key, command);
+            }
+        }, delay, TimeUnit.MILLISECONDS));
+    }
+
+    /**
+     * Runs queued commands until there are none left, then reloads once
+     */
+    private void drain() {
+        while (true) {
+            List<Command> batch;
+            synchronized (this) {
+                if (pending.isEmpty()) {
+                    scheduled = false;
+                    break;
+                }
+                batch = new ArrayList<>(pending.values());
+                pending.clear();
+            }
+
+            for (Command command : batch) {
+                try {
+                    command.run();
+                } catch (IOException | RuntimeException e) {
+                    // One broken command must not stall the queue
+                    e.printStackTrace();
+                }
+            }
+        }
+
+        reload.run();
+    }
+
+    /**
+     * Stops accepting commands
+     */
+    public synchronized void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Audio command which blocks until it's done
+     */
+    public interface Command {
+        void run() throws IOException;
+    }
+}
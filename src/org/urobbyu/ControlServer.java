@@ -0,0 +1,148 @@
+package org.urobbyu;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Pattern;
+
+/**
+ * Line based control endpoint on the loopback interface, so scripts can drive the running instance.
+ * <p>
+ * Every line is one command of space separated words, words with spaces are put in double quotes.
+ * Every answer is a block of lines ending with <b>OK</b> or <b>ERR message</b>.
+ * <p>
+ * Any local program can connect, web pages included: browser can post a body of command lines after it's HTTP headers.
+ * So the connection is closed on the first unknown command or HTTP-looking line, before the body is read
+ */
+public class ControlServer {
+    private static final Pattern HTTP = Pattern.compile("\\S+ \\S+ HTTP/\\d.*|[\\w-]+:.*");
+
+    private final ServerSocket server;
+    private final Set<String> commands;
+    private final Handler handler;
+    private final ExecutorService connections = Executors.newFixedThreadPool(2, r -> {
+        Thread thread = new Thread(r, "Control Connection");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Binds to <b>port</b> of the loopback interface
+     * @param port     TCP port, 0 - any free one
+     * @param commands lowercase names of known commands
+     * @param handler  executor of the commands
+     * @throws IOException thrown if port can't be bound
+     */
+    public ControlServer(int port, Set<String> commands, Handler handler) throws IOException {
+        this.server = new ServerSocket(port, 8, InetAddress.getLoopbackAddress());
+        this.commands = commands;
+        this.handler = handler;
+    }
+
+    /**
+     * Starts accepting connections
+     */
+    public void start() {
+        Thread acceptor = new Thread(() -> {
+            while (!server.isClosed()) {
+                try {
+                    Socket socket = server.accept();
+                    connections.execute(() -> serve(socket));
+                } catch (IOException e) {
+                    if (!server.isClosed()) e.printStackTrace();
+                }
+            }
+        }, "Control Server");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    /**
+     * Stops accepting connections
+     */
+    public void close() {
+        try {
+            server.close();
+        } catch (IOException ignored) {}
+        connections.shutdownNow();
+    }
+
+    private void serve(Socket socket) {
+        try (socket;
+             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+             Writer out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                List<String> command = split(line);
+                if (command.isEmpty()) continue;
+
+                if (HTTP.matcher(line).matches() || !commands.contains(command.get(0).toLowerCase())) {
+                    out.write("ERR Unknown command: " + command.get(0) + "\n");
+                    out.flush();
+                    return;
+                }
+
+                String answer;
+                try {
+                    String result = handler.handle(command);
+                    answer = (result == null || result.isEmpty() ? "" : result + "\n") + "OK";
+                } catch (Exception e) {
+                    answer = "ERR " + String.valueOf(e.getMessage()).replace('\n', ' ');
+                }
+                out.write(answer);
+                out.write('\n');
+                out.flush();
+            }
+        } catch (IOException ignored) {}
+    }
+
+    /**
+     * Splits <b>line</b> into words, keeping quoted ones together
+     * @param line command line
+     * @return words
+     */
+    static List<String> split(String line) {
+        List<String> words = new ArrayList<>();
+        StringBuilder word = new StringBuilder();
+        boolean quoted = false;
+        boolean started = false;
+
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '"') {
+                quoted = !quoted;
+                started = true;
+            } else if (Character.isWhitespace(c) && !quoted) {
+                if (started) words.add(word.toString());
+                word.setLength(0);
+                started = false;
+            } else {
+                word.append(c);
+                started = true;
+            }
+        }
+        if (started) words.add(word.toString());
+
+        return words;
+    }
+
+    /**
+     * Executor of control commands
+     */
+    public interface Handler {
+        /**
+         * Runs <b>command</b>
+         * @param command command name followed by it's arguments
+         * @return result lines, may be empty
+         * @throws Exception thrown if command is invalid or failed, message is sent back
+         */
+        String handle(List<String> command) throws Exception;
+    }
+}
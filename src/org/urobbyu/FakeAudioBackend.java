@@ -0,0 +1,200 @@
+package org.urobbyu;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Deterministic in-memory <b>AudioBackend</b> for headless testing and benchmarking
+ */
+public class FakeAudioBackend implements AudioBackend {
+    private final Map<String, Session> sessions = new LinkedHashMap<>();
+    private final List<Device> devices = new ArrayList<>();
+    private final Random random;
+    private final long latency;
+    private final long seed;
+    private int nextProcessId = 1000;
+    private int nextDevice = 0;
+
+    /**
+     * @param sessions amount of application sessions
+     * @param devices  amount of active output devices
+     * @param latency  delay of every call in milliseconds
+     * @param seed     seed of generated names and routes
+     */
+    public FakeAudioBackend(int sessions, int devices, long latency, long seed) {
+        this.random = new Random(seed);
+        this.latency = latency;
+        this.seed = seed;
+
+        for (int i = 0; i < devices; i++) plug();
+
+        for (int i = 0; i < sessions; i++) spawn();
+    }
+
+    /**
+     * Starts new fake process with random name and device
+     * @return process ID
+     */
+    public synchronized String spawn() {
+        String processId = String.valueOf(nextProcessId++);
+        int app = random.nextInt(Math.max(1, sessions.size() / 4 + 8));
+        sessions.put(processId, new Session(
+            "app" + app + ".exe",
+            processId,
+            "C:\\Program Files\\Fake\\app" + app + ".exe",
+            devices.isEmpty() ? "" : devices.get(random.nextInt(devices.size())).itemId
+        ));
+        return processId;
+    }
+
+    /**
+     * Stops fake process
+     * @param processID system ID of the process
+     */
+    public synchronized void kill(String processID) {
+        sessions.remove(processID);
+    }
+
+    /**
+     * Replaces <b>count</b> oldest processes with new ones
+     * @param count amount of processes
+     */
+    public synchronized void churn(int count) {
+        for (int i = 0; i < count && !sessions.isEmpty(); i++) {
+            kill(sessions.keySet().iterator().next());
+            spawn();
+        }
+    }
+
+    /**
+     * Replaces the oldest process every <b>period</b> on a background thread
+     * @param period delay between replacements in milliseconds
+     */
+    public void startChurn(long period) {
+        Thread churner = new Thread(() -> {
+            while (true) {
+                try {
+                    Thread.sleep(period);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                churn(1);
+            }
+        }, "Fake Churn");
+        churner.setDaemon(true);
+        churner.start();
+    }
+
+    /**
+     * Unplugs the oldest device and plugs in a new one, sessions of the unplugged device move to random ones
+     */
+    public synchronized void churnDevice() {
+        if (devices.isEmpty()) return;
+        String unplugged = devices.remove(0).itemId;
+        plug();
+        for (Session session : sessions.values())
+            if (session.deviceId.equals(unplugged)) session.deviceId = devices.get(random.nextInt(devices.size())).itemId;
+    }
+
+    private void plug() {
+        int i = nextDevice++;
+        devices.add(new Device(
+            "Speakers " + i,
+            String.format("{0.0.0.00000000}.{%08x-0000-0000-0000-%012x}", i, seed),
+            "Fake Audio Device " + i
+        ));
+    }
+
+    @Override
+    public void snapshot(InputDecoder.RowVisitor visitor) {
+        delay();
+        synchronized (this) {
+            for (Device device : devices) visitor.device(device.name, device.itemId, device.deviceName, device.volume + "%");
+            for (Session session : sessions.values())
+                visitor.app(session.name, session.muted, session.processId, session.processPath, session.deviceId + "|#%b{" + session.processId + "}", session.volume + "%");
+        }
+    }
+
+    @Override
+    public void setAppDefault(String deviceID, String processID) {
+        delay();
+        synchronized (this) {
+            Session session = sessions.get(processID);
+            if (session != null) session.deviceId = deviceID;
+        }
+    }
+
+    @Override
+    public void setMute(String processID, boolean mute) {
+        delay();
+        synchronized (this) {
+            Session session = sessions.get(processID);
+            if (session != null) session.muted = mute;
+        }
+    }
+
+    @Override
+    public void setAppVolume(String processID, int percent) {
+        delay();
+        synchronized (this) {
+            Session session = sessions.get(processID);
+            if (session != null) session.volume = percent;
+        }
+    }
+
+    @Override
+    public void setDeviceVolume(String deviceID, int percent) {
+        delay();
+        synchronized (this) {
+            for (Device device : devices)
+                if (device.itemId.equals(deviceID)) device.volume = percent;
+        }
+    }
+
+    @Override
+    public void openSettings(boolean settings) {}
+
+    /**
+     * Simulates time spent by the real backend, outside of the lock so calls may overlap
+     */
+    private void delay() {
+        if (latency > 0)
+            try {
+                Thread.sleep(latency);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+    }
+
+    private static class Session {
+        final String name;
+        final String processId;
+        final String processPath;
+        String deviceId;
+        boolean muted = false;
+        int volume = 100;
+
+        Session(String name, String processId, String processPath, String deviceId) {
+            this.name = name;
+            this.processId = processId;
+            this.processPath = processPath;
+            this.deviceId = deviceId;
+        }
+    }
+
+    private static class Device {
+        final String name;
+        final String itemId;
+        final String deviceName;
+        int volume = 100;
+
+        Device(String name, String itemId, String deviceName) {
+            this.name = name;
+            this.itemId = itemId;
+            this.deviceName = deviceName;
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package org.urobbyu;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.*;
+
+/**
+ * Favorite devices of every app, indexed by <b>app path</b>.
+ * Apps and their devices keep the order they were added in.
+ * Changes are synchronized so the store can be saved from the shutdown thread, views are meant for the event thread
+ */
+public class FavoritesStore {
+    private static final Set<String> NONE = Collections.emptySet();
+
+    private final Map<String, Set<String>> apps = new LinkedHashMap<>();
+    private int size = 0;
+
+    /**
+     * Pins <b>device</b> to the <b>app</b>
+     * @param app    process path
+     * @param device ID of the sound output device
+     * @return F - pair was already pinned
+     */
+    public synchronized boolean add(String app, String device) {
+        if (!apps.computeIfAbsent(app, k -> new LinkedHashSet<>()).add(device)) return false;
+        size++;
+        return true;
+    }
+
+    /**
+     * Unpins <b>device</b> from the <b>app</b>
+     * @param app    process path
+     * @param device ID of the sound output device
+     * @return F - pair wasn't pinned
+     */
+    public synchronized boolean remove(String app, String device) {
+        Set<String> devices = apps.get(app);
+        if (devices == null || !devices.remove(device)) return false;
+        if (devices.isEmpty()) apps.remove(app);
+        size--;
+        return true;
+    }
+
+    /**
+     * Unpins every device from the <b>app</b>
+     * @param app process path
+     */
+    public synchronized void removeApp(String app) {
+        Set<String> devices = apps.remove(app);
+        if (devices != null) size -= devices.size();
+    }
+
+    /**
+     * Unpins everything
+     */
+    public synchronized void clear() {
+        apps.clear();
+        size = 0;
+    }
+
+    /**
+     * Retrieves every app with at least one favorite device
+     * @return process paths
+     */
+    public Set<String> apps() {
+        return Collections.unmodifiableSet(apps.keySet());
+    }
+
+    /**
+     * Retrieves favorite devices of the <b>app</b>
+     * @param app process path
+     * @return device IDs
+     */
+    public Set<String> devices(String app) {
+        return Collections.unmodifiableSet(apps.getOrDefault(app, NONE));
+    }
+
+    /**
+     * Retrieves <b>amount</b> of pinned pairs
+     * @return amount
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Loads pairs stored as <b>appN</b> and <b>deviceN</b> properties
+     * @param in properties file
+     * @throws IOException thrown if file can't be read
+     */
+    public void load(InputStream in) throws IOException {
+        Properties properties = new Properties();
+        properties.load(in);
+        load(properties);
+    }
+
+    /**
+     * Loads pairs stored as <b>appN</b> and <b>deviceN</b> properties
+     * @param properties properties
+     */
+    public synchronized void load(Properties properties) {
+        // Keeping the numeric order, gaps are skipped
+        SortedMap<Integer, String> indexes = new TreeMap<>();
+        for (String key : properties.stringPropertyNames()) {
+            if (key.startsWith("app")) {
+                try {
+                    indexes.put(Integer.parseInt(key.substring(3)), key.substring(3));
+                } catch (NumberFormatException ignored) {}
+            }
+        }
+
+        for (String index : indexes.values()) {
+            String device = properties.getProperty("device" + index);
+            if (device != null) add(properties.getProperty("app" + index), device);
+        }
+    }
+
+    /**
+     * Stores pairs as <b>appN</b> and <b>deviceN</b> properties
+     * @param out properties file
+     * @throws IOException thrown if file can't be written
+     */
+    public void store(OutputStream out) throws IOException {
+        toProperties().store(out, null);
+    }
+
+    /**
+     * Converts pairs to <b>appN</b> and <b>deviceN</b> properties
+     * @return properties
+     */
+    public synchronized Properties toProperties() {
+        Properties properties = new Properties();
+        int index = 1;
+        for (Map.Entry<String, Set<String>> app : apps.entrySet()) {
+            for (String device : app.getValue()) {
+                properties.setProperty("app" + index, app.getKey());
+                properties.setProperty("device" + index, device);
+                index++;
+            }
+        }
+        return properties;
+    }
+}
@@ -0,0 +1,245 @@
+package org.urobbyu;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <b>AudioBackend</b> talking to one long-running helper process over stdin and stdout.
+ * <p>
+ * Every line is a tab separated message. Requests are <b>ID SNAPSHOT [fresh]</b>, <b>ID SETDEFAULT device PID</b>,
+ * <b>ID MUTE PID 1|0</b>, <b>ID VOLUME app|device PID|deviceID percent</b> and <b>ID OPEN settings|app</b>.
+ * Helper answers with any amount of <b>ID APP name muted PID path itemID volume</b> and
+ * <b>ID DEVICE name itemID deviceName volume</b> rows followed by
+ * <b>ID OK</b> or <b>ID ERR message</b>. Answers to different requests may interleave.
+ * Helper pushes <b>* CHANGED what</b> whenever sessions or devices change.
+ * @see AudioHelper
+ */
+public class HelperBackend implements AudioBackend {
+    private static final long TIMEOUT = 10000;
+
+    private final List<String> command;
+    private final AtomicLong ids = new AtomicLong();
+    private final Map<Long, Request> pending = new ConcurrentHashMap<>();
+    // Next snapshot skips the helper's cache
+    private final AtomicBoolean fresh = new AtomicBoolean(false);
+    private volatile Runnable changeListener = () -> {};
+
+    private Process process;
+    private Writer writer;
+
+    /**
+     * @param command command line starting the helper
+     */
+    public HelperBackend(List<String> command) {
+        this.command = command;
+    }
+
+    /**
+     * Creates command line of <b>AudioHelper</b> running in the same Java runtime.
+     * Helper serves backend from <b>soundmenu.helper.backend</b> system property, <b>SoundVolumeView</b> by default
+     * @return command line
+     */
+    public static List<String> defaultCommand() {
+        List<String> command = new ArrayList<>();
+        command.add(ProcessHandle.current().info().command().orElse("java"));
+
+        for (String property : System.getProperties().stringPropertyNames()) {
+            if (property.startsWith("soundmenu.fake.") || property.startsWith("soundmenu.helper."))
+                command.add("-D" + property + "=" + System.getProperty(property));
+        }
+        command.add("-Dsoundmenu.backend=" + System.getProperty("soundmenu.helper.backend", "svv"));
+
+        if (HelperBackend.class.getModule().isNamed()) {
+            String modulePath = System.getProperty("jdk.module.path");
+            if (modulePath != null) {
+                command.add("--module-path");
+                command.add(modulePath);
+            }
+            command.add("-m");
+            command.add(HelperBackend.class.getModule().getName() + "/" + AudioHelper.class.getName());
+        } else {
+            command.add("-cp");
+            command.add(System.getProperty("java.class.path"));
+            command.add(AudioHelper.class.getName());
+        }
+        return command;
+    }
+
+    @Override
+    public void snapshot(InputDecoder.RowVisitor visitor) throws IOException {
+        if (!fresh.getAndSet(false)) {
+            call(visitor, "SNAPSHOT");
+            return;
+        }
+
+        try {
+            call(visitor, "SNAPSHOT", "fresh");
+        } catch (IOException e) {
+            fresh.set(true);
+            throw e;
+        }
+    }
+
+    @Override
+    public void invalidate() {
+        fresh.set(true);
+    }
+
+    @Override
+    public void setAppDefault(String deviceID, String processID) throws IOException {
+        call(null, "SETDEFAULT", deviceID, processID);
+    }
+
+    @Override
+    public void setMute(String processID, boolean mute) throws IOException {
+        call(null, "MUTE", processID, mute ? "1" : "0");
+    }
+
+    @Override
+    public void setAppVolume(String processID, int percent) throws IOException {
+        call(null, "VOLUME", "app", processID, String.valueOf(percent));
+    }
+
+    @Override
+    public void setDeviceVolume(String deviceID, int percent) throws IOException {
+        call(null, "VOLUME", "device", deviceID, String.valueOf(percent));
+    }
+
+    @Override
+    public void openSettings(boolean settings) throws IOException {
+        call(null, "OPEN", settings ? "settings" : "app");
+    }
+
+    @Override
+    public void setChangeListener(Runnable listener) {
+        changeListener = listener;
+    }
+
+    @Override
+    public boolean isPushing() {
+        return true;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (process != null) process.destroy();
+        process = null;
+    }
+
+    /**
+     * Sends request and waits for it's answer
+     * @param visitor receiver of rows, <b>null</b> if request has none
+     * @param args    request name and arguments
+     * @throws IOException thrown if helper failed or didn't answer in time
+     */
+    private void call(InputDecoder.RowVisitor visitor, String... args) throws IOException {
+        long id = ids.incrementAndGet();
+        Request request = new Request(visitor);
+        pending.put(id, request);
+
+        try {
+            send(id + "\t" + String.join("\t", args));
+            request.done.get(TIMEOUT, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause().getMessage());
+        } catch (TimeoutException e) {
+            // Helper that stopped answering is replaced by the next request
+            close();
+            throw new IOException("Helper didn't answer " + args[0] + " in " + TIMEOUT + " ms");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for helper");
+        } finally {
+            pending.remove(id);
+        }
+    }
+
+    /**
+     * Writes one line to the helper, starting it if it's not running
+     */
+    private synchronized void send(String line) throws IOException {
+        if (process == null || !process.isAlive()) start();
+
+        writer.write(line);
+        writer.write('\n');
+        writer.flush();
+    }
+
+    /**
+     * Starts the helper. It's not run through <b>ProcessSupervisor</b>, which waits for children to exit:
+     * helper lives as long as the backend, every request has it's own deadline and helper that died or stopped answering is started again by the next one
+     */
+    private void start() throws IOException {
+        Process process = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+        this.process = process;
+        this.writer = new BufferedWriter(new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8));
+
+        Thread reader = new Thread(() -> read(process), "Helper Reader");
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    /**
+     * Dispatches helper's answers and events until it exits. Cells of rows are interned between snapshots
+     */
+    private void read(Process process) {
+        SymbolTable symbols = new SymbolTable(4096);
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] message = line.split("\t", -1);
+                if (message.length < 2) continue;
+
+                if (message[0].equals("*")) {
+                    if (message[1].equals("CHANGED")) changeListener.run();
+                    continue;
+                }
+
+                Request request;
+                try {
+                    request = pending.get(Long.parseLong(message[0]));
+                } catch (NumberFormatException e) {
+                    continue;
+                }
+                if (request == null) continue;
+
+                switch (message[1]) {
+                    case "APP":
+                        if (request.visitor != null && message.length == 8)
+                            request.visitor.app(symbols.intern(message[2]), message[3].equals("Yes"), symbols.intern(message[4]),
+                                symbols.intern(message[5]), symbols.intern(message[6]), symbols.intern(message[7]));
+                        break;
+                    case "DEVICE":
+                        if (request.visitor != null && message.length == 6)
+                            request.visitor.device(symbols.intern(message[2]), symbols.intern(message[3]), symbols.intern(message[4]), symbols.intern(message[5]));
+                        break;
+                    case "OK":
+                        if (request.visitor != null) symbols.sweep();
+                        request.done.complete(null);
+                        break;
+                    case "ERR":
+                        request.done.completeExceptionally(new IOException(message.length > 2 ? message[2] : "Helper failed"));
+                        break;
+                }
+            }
+        } catch (IOException ignored) {}
+
+        // Helper is gone, nothing will answer the requests left
+        for (Request request : pending.values()) request.done.completeExceptionally(new IOException("Helper exited"));
+    }
+
+    private static class Request {
+        final InputDecoder.RowVisitor visitor;
+        final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        Request(InputDecoder.RowVisitor visitor) {
+            this.visitor = visitor;
+        }
+    }
+}
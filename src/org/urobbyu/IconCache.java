@@ -0,0 +1,124 @@
+package org.urobbyu;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BaseMultiResolutionImage;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.net.URL;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Tray icons decoded once and pre-rendered for several screen scales.
+ * Every icon can carry a state badge, icons with badges are rendered on first use and kept
+ */
+public class IconCache {
+    private static final int SIZE = 16;
+    // Scales of common Windows DPI settings, the current one is added on top
+    private static final double[] SCALES = { 1, 1.25, 1.5, 1.75, 2, 2.5, 3 };
+
+    /**
+     * State shown in the corner of the icon
+     */
+    public enum Badge {
+        NONE(null),
+        ALL_MUTED(Color.GRAY),
+        FAVORITE_NOT_FOUND(new Color(0xF0C000)),
+        REFRESH_FAILED(new Color(0xE02020));
+
+        final Color color;
+
+        Badge(Color color) {
+            this.color = color;
+        }
+    }
+
+    private final Map<String, BufferedImage> sources = new HashMap<>();
+    private final Map<String, Map<Badge, Image>> icons = new HashMap<>();
+    private final double[] scales;
+
+    /**
+     * @param screenScale scale of the current screen, 1 is 96 DPI
+     */
+    public IconCache(double screenScale) {
+        TreeSet<Double> scales = new TreeSet<>();
+        for (double scale : SCALES) scales.add(scale);
+        if (screenScale > 0) scales.add(screenScale);
+
+        this.scales = scales.stream().mapToDouble(Double::doubleValue).toArray();
+    }
+
+    /**
+     * Creates cache for the default screen
+     * @return cache
+     */
+    public static IconCache forScreen() {
+        double scale = 1;
+        try {
+            scale = Toolkit.getDefaultToolkit().getScreenResolution() / 96d;
+        } catch (HeadlessException ignored) {}
+        return new IconCache(scale);
+    }
+
+    /**
+     * Retrieves icon loaded from system resources
+     * @param filename name of the resource
+     * @param badge    state badge
+     * @return multi resolution icon
+     */
+    public synchronized Image get(String filename, Badge badge) {
+        return icons.computeIfAbsent(filename, f -> new EnumMap<>(Badge.class))
+            .computeIfAbsent(badge, b -> render(source(filename), b));
+    }
+
+    private BufferedImage source(String filename) {
+        return sources.computeIfAbsent(filename, f -> {
+            URL url = ClassLoader.getSystemResource(f);
+            try {
+                if (url != null) {
+                    BufferedImage image = ImageIO.read(url);
+                    if (image != null) return image;
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            // Empty icon keeps the tray usable without resources
+            return new BufferedImage(SIZE, SIZE, BufferedImage.TYPE_INT_ARGB);
+        });
+    }
+
+    private Image render(BufferedImage source, Badge badge) {
+        Image[] variants = new Image[scales.length];
+        for (int i = 0; i < scales.length; i++) variants[i] = render(source, badge, (int) Math.round(SIZE * scales[i]));
+        return new BaseMultiResolutionImage(variants);
+    }
+
+    /**
+     * Draws <b>source</b> scaled to <b>size</b> with <b>badge</b> in the bottom right corner
+     */
+    private static BufferedImage render(BufferedImage source, Badge badge, int size) {
+        BufferedImage image = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = image.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            g.drawImage(source, 0, 0, size, size, null);
+
+            if (badge.color != null) {
+                int diameter = Math.max(5, size * 7 / 16);
+                int x = size - diameter;
+                g.setColor(Color.WHITE);
+                g.fillOval(x - 1, x - 1, diameter + 1, diameter + 1);
+                g.setColor(badge.color);
+                g.fillOval(x, x, diameter - 1, diameter - 1);
+            }
+        } finally {
+            g.dispose();
+        }
+        return image;
+    }
+}
@@ -1,137 +1,98 @@
 package org.urobbyu;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.nio.charset.StandardCharsets;
-import java.util.Arrays;
 
 /**
  * Little <b>SoundVolumeView</b> data receiver
  */
 public class InputDecoder {
-    private String[] data;
-    private String[] propNames;
-
-    public static int iName;
-    public static int iMuted;
-    public static int iProcessID;
-    public static int iProcessPath;
-    public static int iItemID;
-    public static int iDirection;
-    public static int iType;
-    public static int iDeviceName;
-    public static int iDeviceState;
-
-    InputDecoder() {
-        reload();
+    private final AudioBackend backend;
+    private volatile AudioSnapshot snapshot = AudioSnapshot.EMPTY;
+    private volatile boolean failed = false;
+    private long fingerprint = 0;
+    // Canonical device IDs of sessions, other cells are canonical as decoded by the backend
+    private final SymbolTable symbols = new SymbolTable(256);
+
+    InputDecoder(AudioBackend backend) {
+        this.backend = backend;
     }
 
     /**
-     * Reloads <b>data</b>
+     * Reloads <b>data</b>. Snapshot is kept as is if the backend reports the same raw output as last time
      * @return this object
      */
-    public InputDecoder reload() {
+    public synchronized InputDecoder reload() {
+        long start = Metrics.RELOAD.start();
         try {
-            data = (new BufferedReader(new InputStreamReader(Runtime.getRuntime().exec(new String[]{ "cmd", "/c", "SoundVolumeView.exe /stab" }).getInputStream(), StandardCharsets.UTF_16LE))).lines().toArray(String[]::new);
-            propNames = getRow(0);
-            data = Arrays.copyOfRange(data, 1, data.length - 1);
-
-            iProcessID = getPropertyIndex("Process ID");
-            iProcessPath = getPropertyIndex("Process Path");
-            iItemID = getPropertyIndex("Item ID");
-            iDirection = getPropertyIndex("Direction");
-            iType = getPropertyIndex("Type");
-            iDeviceName = getPropertyIndex("Device Name");
-            iDeviceState = getPropertyIndex("Device State");
-            iMuted = getPropertyIndex("Muted");
-            iName = getPropertyIndex("\uFEFFName");
-
-        } catch (IOException e) { e.printStackTrace(); }
+            AudioSnapshot.Builder builder = new AudioSnapshot.Builder(failed ? 0 : fingerprint, symbols);
+            backend.snapshot(builder);
+            if (builder.isUnchanged())
+                Metrics.cycleSkipped();
+            else {
+                long build = Metrics.BUILD_SNAPSHOT.start();
+                snapshot = builder.build();
+                Metrics.BUILD_SNAPSHOT.stop(build);
+                fingerprint = builder.getFingerprint();
+                symbols.sweep();
+                Metrics.cycleApplied();
+            }
+            failed = false;
+            Metrics.RELOAD.stop(start);
+        } catch (IOException e) {
+            failed = true;
+            Metrics.RELOAD.fail(start);
+            e.printStackTrace();
+        }
 
         return this;
     }
 
     /**
-     * Retrieves one row from <b>data</b> by it's <b>index</b>
-     * @param index index
-     * @return data
+     * Starts with <b>snapshot</b> restored from somewhere else, the next reload always replaces it
+     * @param snapshot snapshot
      */
-    public String[] getRow(int index) {
-        return data[index].split("\t", -1);
+    public synchronized void restore(AudioSnapshot snapshot) {
+        this.snapshot = snapshot;
+        fingerprint = 0;
     }
 
     /**
-     * Retrieves one column from <b>data</b> by it's <b>property name</b>
-     * @param prop name of the property
-     * @return data
+     * Retrieves snapshot taken by the last reload
+     * @return snapshot
      */
-    public String[] getColumn(String prop) {
-        return getColumn(getPropertyIndex(prop));
+    public AudioSnapshot getSnapshot() {
+        return snapshot;
     }
 
     /**
-     * Retrieves one column from <b>data</b> by it's <b>index</b>
-     * @param index index
-     * @return data
+     * Checks if the last reload failed, snapshot is left from the reload before it then
+     * @return T - failed
      */
-    public String[] getColumn(int index) {
-        String[] ret = new String[data.length];
-        for (int i = 0; i < data.length; i++) {
-            ret[i] = getRow(i)[index];
-        }
-        return ret;
+    public boolean isFailed() {
+        return failed;
     }
 
     /**
-     * Searches for provided <b>property name</b>
-     * @param prop property name
-     * @return index
+     * Receiver of decoded rows
      */
-    public int getPropertyIndex(String prop) {
-        int ret = -1;
-        for (int i = 0; i < rowSize(); i++) {
-            if (prop.equals(propNames[i])) {
-                ret = i;
-                break;
-            }
+    public interface RowVisitor {
+        /**
+         * Called for every rendering application session. <b>volume</b> is formatted like <b>42.5%</b>
+         */
+        void app(String name, boolean muted, String processId, String processPath, String itemId, String volume);
+
+        /**
+         * Called for every active rendering device. <b>volume</b> is formatted like <b>42.5%</b>
+         */
+        void device(String name, String itemId, String deviceName, String volume);
+
+        /**
+         * Called before any row if the source hashes it's raw output
+         * @param fingerprint hash of the raw output
+         * @return T - rows are wanted, F - rows are skipped
+         */
+        default boolean fingerprint(long fingerprint) {
+            return true;
         }
-        return (ret == rowSize() ? -1 : ret);
-    }
-
-    /**
-     * Retrieves one <b>cell</b> from <b>data</b> by it's <b>X</b> and <b>property name</b>
-     * @param row  X
-     * @param prop property name
-     * @return data
-     */
-    public String getCell(int row, String prop) {
-        return getRow(row)[getPropertyIndex(prop)];
-    }
-
-    /**
-     * Retrieves one <b>cell</b> from <b>data</b> by it's <b>X</b> and <b>Y</b>
-     * @param row X
-     * @param col Y
-     * @return data
-     */
-    public String getCell(int row, int col) {
-        return getRow(row)[col];
-    }
-
-    /**
-     * Retrieves <b>size</b> of property list
-     * @return size
-     */
-    public int rowSize() {
-        return propNames.length;
-    }
-
-    /**
-     * Retrieves <b>amount</b> of all entries
-     * @return amount
-     */
-    public int size() {
-        return data.length;
     }
 }
@@ -0,0 +1,288 @@
+package org.urobbyu;
+
+import java.util.*;
+
+/**
+ * Describes <b>appsMenu</b>, <b>favoritesMenu</b> and <b>favPopup</b> as <b>MenuNode</b> trees.
+ * Clicks are reported through action commands, <b>app:</b> or <b>exe:</b> keyed parent menu tells which app
+ * or group of processes was clicked
+ */
+public class MenuBuilder {
+    public static final String DEVICE = "device";
+    public static final String MUTE = "mute";
+    public static final String FAVORITE = "favorite";
+    public static final String DELETE = "delete";
+    public static final String CLEAR = "clear";
+    public static final String EDIT = "edit";
+    public static final String SWITCH = "switch";
+    public static final String PROFILE = "profile";
+    public static final String VOLUME = "volume";
+    public static final String MASTER = "master";
+    public static final String APP_KEY = "app:";
+    public static final String DEVICE_KEY = "dev:";
+    public static final String GROUP_KEY = "exe:";
+
+    private static final int VOLUME_STEP = 10;
+
+    private final boolean noInfo;
+    private final boolean simpleMenu;
+    private final boolean groupApps;
+    // Volume levels only differ by the current one, so they are described once per action and volume
+    private final Map<String, List<MenuNode>> levelNodes = new HashMap<>();
+
+    /**
+     * @param noInfo     hides IDs of processes and SubNames of devices
+     * @param simpleMenu hides 'Mute' and 'Output Device' menus
+     * @param groupApps  shows processes of one executable as a single menu
+     */
+    public MenuBuilder(boolean noInfo, boolean simpleMenu, boolean groupApps) {
+        this.noInfo = noInfo;
+        this.simpleMenu = simpleMenu;
+        this.groupApps = groupApps;
+    }
+
+    /**
+     * Describes <b>appsMenu</b>
+     * @param data     snapshot of applications and devices
+     * @param editMode T - device clicks add favorites
+     * @return entries
+     */
+    public List<MenuNode> appsMenu(AudioSnapshot data, boolean editMode) {
+        List<MenuNode> nodes = new ArrayList<>(data.sessions().size() + 2);
+
+        // Labels and commands are the same for every app, so they are rendered once per device
+        List<AudioSnapshot.Device> devices = data.devices();
+        String[] labels = new String[devices.size()];
+        String[] commands = new String[devices.size()];
+        String[] keys = new String[devices.size()];
+        for (int j = 0; j < labels.length; j++) {
+            labels[j] = deviceLabel(devices.get(j));
+            commands[j] = command(DEVICE, devices.get(j).itemId);
+            keys[j] = DEVICE + ":" + devices.get(j).itemId;
+        }
+
+        nodes.add(MenuNode.separator("-0"));
+
+        if (groupApps) {
+            for (List<AudioSnapshot.Session> group : groups(data.sessions())) {
+                AudioSnapshot.Session first = group.get(0);
+                if (group.size() == 1) {
+                    nodes.add(appMenu(APP_KEY + first.processId, first.name + (noInfo ? "" : " (" + first.processId + ")"), !first.stale,
+                        first.deviceId, first.muted, first.volume, devices, labels, commands, keys, editMode));
+                    continue;
+                }
+
+                // Group shows the state all of it's running processes share
+                String deviceId = null;
+                boolean muted = true;
+                int volume = -2;
+                int running = 0;
+                for (AudioSnapshot.Session session : group) {
+                    if (session.stale) continue;
+                    deviceId = running == 0 || session.deviceId.equals(deviceId) ? session.deviceId : "";
+                    muted &= session.muted;
+                    volume = volume == -2 || volume == session.volume ? session.volume : -1;
+                    running++;
+                }
+                String label = first.name + (noInfo || running == 0 ? "" : " (" + running + " processes)");
+                nodes.add(appMenu(GROUP_KEY + first.processPath, label, running > 0,
+                    deviceId, running > 0 && muted, Math.max(volume, -1), devices, labels, commands, keys, editMode));
+            }
+        } else {
+            for (AudioSnapshot.Session session : data.sessions()) {
+                // Process restored from the cache is gone, so there's nothing to click
+                nodes.add(appMenu(APP_KEY + session.processId, session.name + (noInfo ? "" : " (" + session.processId + ")"), !session.stale,
+                    session.deviceId, session.muted, session.volume, devices, labels, commands, keys, editMode));
+            }
+        }
+        nodes.add(MenuNode.separator("-1"));
+
+        if (!simpleMenu && !devices.isEmpty()) {
+            List<MenuNode> masterNodes = new ArrayList<>(devices.size());
+            for (int j = 0; j < labels.length; j++) {
+                AudioSnapshot.Device device = devices.get(j);
+                masterNodes.add(MenuNode.menu(DEVICE_KEY + device.itemId, volumeLabel(labels[j], device.volume), true, levels(MASTER, device.volume)));
+            }
+            nodes.add(MenuNode.menu(MASTER, "Master Volume", true, masterNodes));
+            nodes.add(MenuNode.separator("-2"));
+        }
+
+        return nodes;
+    }
+
+    /**
+     * Describes sub menu of one app or group of processes
+     * @param deviceId device the app plays on, <b>null</b> or empty if unknown
+     * @param volume   volume in percent, -1 if unknown
+     */
+    private MenuNode appMenu(String key, String label, boolean enabled, String deviceId, boolean muted, int volume,
+                             List<AudioSnapshot.Device> devices, String[] labels, String[] commands, String[] keys, boolean editMode) {
+        List<MenuNode> appNodes = new ArrayList<>();
+        List<MenuNode> deviceNodes = simpleMenu ? appNodes : new ArrayList<>(devices.size() + 2);
+
+        appNodes.add(MenuNode.separator("-0"));
+        if (!simpleMenu) deviceNodes.add(MenuNode.separator("-0"));
+
+        for (int j = 0; j < labels.length; j++) {
+            deviceNodes.add(MenuNode.item(keys[j], labels[j], !devices.get(j).itemId.equals(deviceId) || editMode, commands[j]));
+        }
+
+        if (!simpleMenu) {
+            deviceNodes.add(MenuNode.separator("-1"));
+            appNodes.add(MenuNode.menu("devices", "Output Device", true, deviceNodes));
+            appNodes.add(MenuNode.separator("-1"));
+            appNodes.add(MenuNode.checkbox(MUTE, "Mute", muted, MUTE).plain());
+            appNodes.add(MenuNode.menu(VOLUME, volumeLabel("Volume", volume), true, levels(VOLUME, volume)));
+        }
+        appNodes.add(MenuNode.separator("-2"));
+
+        return MenuNode.menu(key, label, enabled, appNodes);
+    }
+
+    /**
+     * Groups sessions by their process path, in order of the first session of every group
+     */
+    private static Collection<List<AudioSnapshot.Session>> groups(List<AudioSnapshot.Session> sessions) {
+        Map<String, List<AudioSnapshot.Session>> groups = new LinkedHashMap<>();
+        for (AudioSnapshot.Session session : sessions)
+            groups.computeIfAbsent(session.processPath, k -> new ArrayList<>(1)).add(session);
+        return groups.values();
+    }
+
+    /**
+     * Describes one sub menu for every favorite app
+     * @param data      snapshot of applications and devices
+     * @param favorites favorite app and device pairs
+     * @param editMode  T - device clicks remove favorites
+     * @return entries
+     */
+    public List<MenuNode> favoriteApps(AudioSnapshot data, FavoritesStore favorites, boolean editMode) {
+        List<MenuNode> appNodes = new ArrayList<>();
+
+        for (String appPath : favorites.apps()) {
+            List<MenuNode> deviceNodes = new ArrayList<>();
+            AudioSnapshot.Session session = data.sessionOf(appPath);
+            String appLabel;
+
+            if (session == null) {
+                String[] filePath = appPath.split("\\\\");
+                appLabel = filePath[filePath.length - 1];
+            } else
+                appLabel = session.name;
+
+            deviceNodes.add(MenuNode.separator("-0"));
+
+            for (String appDevice : favorites.devices(appPath)) {
+                AudioSnapshot.Device device = data.device(appDevice);
+
+                if (deviceNodes.size() > 1) deviceNodes.add(MenuNode.separator("-" + deviceNodes.size()));
+
+                deviceNodes.add(MenuNode.item(
+                    DEVICE + ":" + appDevice,
+                    device == null ? "Device not found" : deviceLabel(device),
+                    device != null,
+                    command(FAVORITE, appDevice)
+                ));
+            }
+
+            if (editMode) {
+                deviceNodes.add(MenuNode.separator("-delete"));
+                deviceNodes.add(MenuNode.item(DELETE, "Delete All", true, DELETE).plain());
+            }
+
+            deviceNodes.add(MenuNode.separator("-end"));
+
+            appNodes.add(MenuNode.menu(APP_KEY + appPath, appLabel, (session != null && !session.stale) || editMode, deviceNodes));
+        }
+
+        return appNodes;
+    }
+
+    /**
+     * Describes <b>favPopup</b>
+     * @param appNodes favorite app menus
+     * @return entries
+     */
+    public List<MenuNode> favPopup(List<MenuNode> appNodes) {
+        List<MenuNode> nodes = new ArrayList<>();
+
+        nodes.add(MenuNode.separator("-0"));
+        nodes.addAll(appNodes);
+
+        if (appNodes.isEmpty()) nodes.add(MenuNode.item(SWITCH, "Switch mode", true, SWITCH));
+
+        nodes.add(MenuNode.separator("-1"));
+
+        return nodes;
+    }
+
+    /**
+     * Describes <b>favoritesMenu</b>
+     * @param appNodes favorite app menus
+     * @param editMode T - shows 'Cancel' instead of 'Edit'
+     * @return entries
+     */
+    public List<MenuNode> favoritesMenu(List<MenuNode> appNodes, boolean editMode) {
+        List<MenuNode> nodes = new ArrayList<>();
+
+        nodes.add(MenuNode.separator("-0"));
+        for (int i = 0; i < appNodes.size(); i++) {
+            if (i > 0) nodes.add(MenuNode.separator("-app" + i));
+            nodes.add(appNodes.get(i));
+        }
+
+        // Adding Edit and Remove All Menu Items
+        if (!appNodes.isEmpty()) nodes.add(MenuNode.separator("-1"));
+        nodes.add(MenuNode.item(EDIT, editMode ? "Cancel" : "Edit", true, EDIT).plain());
+        nodes.add(MenuNode.item(CLEAR, "Remove All", true, CLEAR).plain());
+        nodes.add(MenuNode.separator("-2"));
+
+        return nodes;
+    }
+
+    /**
+     * Describes <b>profilesMenu</b>
+     * @param names names of the profiles
+     * @return entries
+     */
+    public List<MenuNode> profilesMenu(List<String> names) {
+        List<MenuNode> nodes = new ArrayList<>(names.size());
+        for (String name : names) nodes.add(MenuNode.item(PROFILE + ":" + name, name, true, command(PROFILE, name)));
+        return nodes;
+    }
+
+    /**
+     * Describes volume levels, the <b>current</b> one is greyed out
+     * @param action  action of the levels, <b>VOLUME</b> or <b>MASTER</b>
+     * @param current volume in percent, -1 if unknown
+     */
+    private List<MenuNode> levels(String action, int current) {
+        return levelNodes.computeIfAbsent(action + current, k -> {
+            List<MenuNode> nodes = new ArrayList<>(100 / VOLUME_STEP + 1);
+            for (int level = 100; level >= 0; level -= VOLUME_STEP)
+                nodes.add(MenuNode.item(action + ":" + level, level + "%", level != current, command(action, String.valueOf(level))).plain());
+            return nodes;
+        });
+    }
+
+    private static String volumeLabel(String label, int volume) {
+        return volume == -1 ? label : label + " - " + volume + "%";
+    }
+
+    /**
+     * Creates label of the <b>device</b>
+     */
+    private String deviceLabel(AudioSnapshot.Device device) {
+        return device.name + (noInfo ? "" : " (" + device.subName + ")");
+    }
+
+    /**
+     * Creates action command with one argument
+     * @param action   action, e.g. <b>device</b>
+     * @param argument argument
+     * @return command
+     */
+    public static String command(String action, String argument) {
+        return action + '\t' + argument;
+    }
+}
@@ -0,0 +1,84 @@
+package org.urobbyu;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Lightweight description of one menu entry, applied to real menus by <b>MenuReconciler</b>
+ */
+public final class MenuNode {
+    public enum Kind { ITEM, CHECKBOX, MENU, SEPARATOR }
+
+    final Kind kind;
+    final String key;
+    final String label;
+    final boolean enabled;
+    final boolean checked;
+    final List<MenuNode> children;
+    final String command;
+    boolean plain = false;
+
+    private MenuNode(Kind kind, String key, String label, boolean enabled, boolean checked, List<MenuNode> children, String command) {
+        this.kind = kind;
+        this.key = key;
+        this.label = label;
+        this.enabled = enabled;
+        this.checked = checked;
+        this.children = children;
+        this.command = command;
+    }
+
+    /**
+     * Creates plain menu item
+     * @param key     identity of the item inside it's parent
+     * @param label   label
+     * @param enabled T - clickable, F - greyed out
+     * @param command action command handled by the shared listener
+     * @return node
+     */
+    public static MenuNode item(String key, String label, boolean enabled, String command) {
+        return new MenuNode(Kind.ITEM, key, label, enabled, false, Collections.emptyList(), command);
+    }
+
+    /**
+     * Creates checkbox menu item
+     * @param key     identity of the item inside it's parent
+     * @param label   label
+     * @param checked state
+     * @param command action command handled by the shared listener
+     * @return node
+     */
+    public static MenuNode checkbox(String key, String label, boolean checked, String command) {
+        return new MenuNode(Kind.CHECKBOX, key, label, true, checked, Collections.emptyList(), command);
+    }
+
+    /**
+     * Creates sub menu
+     * @param key      identity of the menu inside it's parent
+     * @param label    label
+     * @param enabled  T - clickable, F - greyed out
+     * @param children entries of the menu
+     * @return node
+     */
+    public static MenuNode menu(String key, String label, boolean enabled, List<MenuNode> children) {
+        return new MenuNode(Kind.MENU, key, label, enabled, false, children, null);
+    }
+
+    /**
+     * Creates separator
+     * @param key identity of the separator inside it's parent
+     * @return node
+     */
+    public static MenuNode separator(String key) {
+        return new MenuNode(Kind.SEPARATOR, key, "-", true, false, Collections.emptyList(), null);
+    }
+
+    /**
+     * Marks node to be rendered with plain font
+     * @return this object
+     */
+    public MenuNode plain() {
+        plain = true;
+        return this;
+    }
+}
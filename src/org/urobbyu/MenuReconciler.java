@@ -0,0 +1,140 @@
+package org.urobbyu;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Brings existing menus in line with a list of <b>MenuNode</b>s, touching only entries that changed
+ * @param <T> type of menu entries
+ */
+public abstract class MenuReconciler<T> {
+
+    /**
+     * Reconciles children of <b>container</b> with <b>nodes</b>.
+     * Entries are matched by key, so unchanged entries keep their peers and listeners. Entries that left are removed
+     * first, then only new entries and entries that really changed their order are inserted
+     * @param container menu to update
+     * @param nodes     desired entries
+     */
+    public void reconcile(T container, List<MenuNode> nodes) {
+        // First node of every key, later duplicates get new entries
+        Map<String, Integer> wanted = new HashMap<>(nodes.size() * 2);
+        for (int i = nodes.size() - 1; i >= 0; i--) wanted.put(nodes.get(i).key, i);
+
+        // Removing stale entries before anything is inserted keeps the rest from shifting
+        Map<String, T> existing = new HashMap<>(nodes.size() * 2);
+        List<T> kept = new ArrayList<>();
+        int[] order = new int[count(container)];
+        for (int i = 0; i < count(container); ) {
+            T child = child(container, i);
+            Integer index = wanted.get(keyOf(child));
+            if (index == null || existing.containsKey(keyOf(child)) || !matches(child, nodes.get(index))) {
+                remove(container, child);
+                discard(child);
+                continue;
+            }
+            existing.put(keyOf(child), child);
+            order[kept.size()] = index;
+            kept.add(child);
+            i++;
+        }
+
+        // Longest run of entries already in the right order stays, the others are moved
+        boolean[] stays = new boolean[nodes.size()];
+        boolean[] increasing = increasing(order, kept.size());
+        for (int i = 0; i < kept.size(); i++) {
+            if (increasing[i]) stays[order[i]] = true;
+            else remove(container, kept.get(i));
+        }
+
+        for (int i = 0; i < nodes.size(); i++) {
+            MenuNode node = nodes.get(i);
+            T peer = existing.remove(node.key);
+
+            if (peer == null) {
+                peer = create(node);
+                insert(container, peer, i);
+            } else {
+                update(peer, node);
+                if (!stays[i]) insert(container, peer, i);
+            }
+
+            if (node.kind == MenuNode.Kind.MENU) reconcile(peer, node.children);
+        }
+    }
+
+    /**
+     * Finds one of the longest increasing subsequences of the first <b>length</b> <b>values</b>
+     * @return T - value at the same index is a part of it
+     */
+    private static boolean[] increasing(int[] values, int length) {
+        // Index of the smallest tail of every subsequence length, and the previous element of every value
+        int[] tails = new int[length];
+        int[] previous = new int[length];
+        int size = 0;
+        for (int i = 0; i < length; i++) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (values[tails[middle]] < values[i]) low = middle + 1;
+                else high = middle;
+            }
+            previous[i] = low > 0 ? tails[low - 1] : -1;
+            tails[low] = i;
+            if (low == size) size++;
+        }
+
+        boolean[] result = new boolean[length];
+        for (int i = size > 0 ? tails[size - 1] : -1; i >= 0; i = previous[i]) result[i] = true;
+        return result;
+    }
+
+    /**
+     * Retrieves <b>amount</b> of children
+     */
+    protected abstract int count(T container);
+
+    /**
+     * Retrieves child by it's <b>index</b>
+     */
+    protected abstract T child(T container, int index);
+
+    /**
+     * Retrieves key the entry was created with
+     */
+    protected abstract String keyOf(T entry);
+
+    /**
+     * Checks if existing entry can be reused for the <b>node</b>
+     */
+    protected abstract boolean matches(T entry, MenuNode node);
+
+    /**
+     * Creates new entry from the <b>node</b>
+     */
+    protected abstract T create(MenuNode node);
+
+    /**
+     * Applies changed properties of the <b>node</b> to reused entry
+     */
+    protected abstract void update(T entry, MenuNode node);
+
+    /**
+     * Inserts <b>entry</b> at provided <b>index</b>
+     */
+    protected abstract void insert(T container, T entry, int index);
+
+    /**
+     * Removes <b>entry</b> from the <b>container</b>
+     */
+    protected abstract void remove(T container, T entry);
+
+    /**
+     * Called for every entry that left the menu for good
+     * @param entry removed entry
+     */
+    protected void discard(T entry) {}
+}
@@ -0,0 +1,241 @@
+package org.urobbyu;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runtime statistics of reloads, menu rendering and audio commands.
+ * <p>
+ * Every histogram keeps count, errors and latencies in power of two buckets, so recording
+ * only adds to counters. Statistics are exposed as <b>org.urobbyu:type=Metrics</b> MBeans
+ */
+public final class Metrics implements MetricsMBean {
+    /** Whole <b>InputDecoder.reload()</b> */
+    public static final Histogram RELOAD = new Histogram("reload");
+    /** Start of the <b>SoundVolumeView</b> process */
+    public static final Histogram SPAWN = new Histogram("spawn");
+    /** Reading and decoding of <b>/stab</b> output, output skipped by it's fingerprint isn't recorded */
+    public static final Histogram PARSE = new Histogram("parse");
+    /** Build of <b>AudioSnapshot</b> from decoded rows, skipped cycles aren't recorded */
+    public static final Histogram BUILD_SNAPSHOT = new Histogram("buildSnapshot");
+    /** Refill of apps menu, performed when it's about to be shown */
+    public static final Histogram APPS_MENU = new Histogram("refreshAppsMenu");
+    public static final Histogram FAVORITES = new Histogram("refreshFavorites");
+    /** Execution of queued device switch */
+    public static final Histogram SWITCH_DEVICE = new Histogram("switchDevice");
+    /** Execution of queued mute */
+    public static final Histogram MUTE_APP = new Histogram("muteApp");
+
+    private static final Histogram[] HISTOGRAMS = { RELOAD, SPAWN, PARSE, BUILD_SNAPSHOT, APPS_MENU, FAVORITES, SWITCH_DEVICE, MUTE_APP };
+    private static final LongAdder rows = new LongAdder();
+    private static final LongAdder skipped = new LongAdder();
+    private static final LongAdder applied = new LongAdder();
+
+    private Metrics() {}
+
+    /**
+     * Counts decoded table rows
+     * @param count amount of rows
+     */
+    public static void rowsParsed(long count) {
+        rows.add(count);
+    }
+
+    /**
+     * Counts reload that found the same raw output as the previous one and skipped parsing
+     */
+    public static void cycleSkipped() {
+        skipped.increment();
+    }
+
+    /**
+     * Counts reload that parsed the output and built new snapshot
+     */
+    public static void cycleApplied() {
+        applied.increment();
+    }
+
+    /**
+     * Registers statistics in the platform MBean server
+     */
+    public static void register() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            server.registerMBean(new Metrics(), new ObjectName("org.urobbyu:type=Metrics"));
+            for (Histogram histogram : HISTOGRAMS)
+                server.registerMBean(histogram, new ObjectName("org.urobbyu:type=Metrics,name=" + histogram.name));
+        } catch (JMException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Prints summary to the console every <b>period</b> seconds
+     * @param period period in seconds
+     */
+    public static void startDump(long period) {
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "Metrics Dump");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleAtFixedRate(() -> System.out.println(summary()), period, period, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Creates summary of every histogram
+     * @return multiline summary
+     */
+    public static String summary() {
+        StringBuilder summary = new StringBuilder("Sound Menu metrics, rows parsed: ").append(rows.sum())
+            .append(", cycles skipped: ").append(skipped.sum()).append(", applied: ").append(applied.sum());
+        for (Histogram histogram : HISTOGRAMS) summary.append('\n').append(histogram);
+        return summary.toString();
+    }
+
+    @Override
+    public long getRowsParsed() {
+        return rows.sum();
+    }
+
+    @Override
+    public long getSkippedCycles() {
+        return skipped.sum();
+    }
+
+    @Override
+    public long getAppliedCycles() {
+        return applied.sum();
+    }
+
+    @Override
+    public String getSummary() {
+        return summary();
+    }
+
+    /**
+     * Latency histogram with power of two buckets of nanoseconds
+     */
+    public static final class Histogram implements HistogramMBean {
+        private static final int BUCKETS = 64;
+
+        private final String name;
+        private final LongAdder count = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder total = new LongAdder();
+        private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+        private final LongAdder[] buckets = new LongAdder[BUCKETS];
+
+        Histogram(String name) {
+            this.name = name;
+            for (int i = 0; i < BUCKETS; i++) buckets[i] = new LongAdder();
+        }
+
+        /**
+         * Marks start of measured operation
+         * @return start time to pass to <b>stop()</b> or <b>fail()</b>
+         */
+        public long start() {
+            return System.nanoTime();
+        }
+
+        /**
+         * Records successful operation
+         * @param start value returned by <b>start()</b>
+         */
+        public void stop(long start) {
+            long nanos = Math.max(0, System.nanoTime() - start);
+            count.increment();
+            total.add(nanos);
+            max.accumulate(nanos);
+            buckets[63 - Long.numberOfLeadingZeros(nanos | 1)].increment();
+        }
+
+        /**
+         * Records failed operation
+         * @param start value returned by <b>start()</b>
+         */
+        public void fail(long start) {
+            errors.increment();
+            stop(start);
+        }
+
+        @Override
+        public long getCount() {
+            return count.sum();
+        }
+
+        @Override
+        public long getErrors() {
+            return errors.sum();
+        }
+
+        @Override
+        public double getMeanMillis() {
+            long count = this.count.sum();
+            return count == 0 ? 0 : total.sum() / 1e6 / count;
+        }
+
+        @Override
+        public double getP50Millis() {
+            return percentile(0.5);
+        }
+
+        @Override
+        public double getP99Millis() {
+            return percentile(0.99);
+        }
+
+        @Override
+        public double getMaxMillis() {
+            return max.get() / 1e6;
+        }
+
+        /**
+         * Searches for the upper bound of the bucket holding <b>fraction</b> of operations
+         */
+        private double percentile(double fraction) {
+            long[] counts = new long[BUCKETS];
+            long count = 0;
+            for (int i = 0; i < BUCKETS; i++) count += counts[i] = buckets[i].sum();
+            if (count == 0) return 0;
+
+            long rank = (long) Math.ceil(count * fraction);
+            for (int i = 0; i < BUCKETS; i++) {
+                rank -= counts[i];
+                if (rank <= 0) return Math.min((1L << Math.min(i + 1, 62)) / 1e6, getMaxMillis());
+            }
+            return getMaxMillis();
+        }
+
+        @Override
+        public String toString() {
+            return String.format("  %-17s count=%d errors=%d mean=%.2fms p50<=%.2fms p99<=%.2fms max=%.2fms",
+                name, getCount(), getErrors(), getMeanMillis(), getP50Millis(), getP99Millis(), getMaxMillis());
+        }
+    }
+
+    /**
+     * JMX view of <b>Histogram</b>
+     */
+    public interface HistogramMBean {
+        long getCount();
+
+        long getErrors();
+
+        double getMeanMillis();
+
+        double getP50Millis();
+
+        double getP99Millis();
+
+        double getMaxMillis();
+    }
+}
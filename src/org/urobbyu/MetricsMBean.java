@@ -0,0 +1,14 @@
+package org.urobbyu;
+
+/**
+ * JMX view of <b>Metrics</b>
+ */
+public interface MetricsMBean {
+    long getRowsParsed();
+
+    long getSkippedCycles();
+
+    long getAppliedCycles();
+
+    String getSummary();
+}
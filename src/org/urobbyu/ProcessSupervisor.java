@@ -0,0 +1,231 @@
+package org.urobbyu;
+
+import java.io.*;
+import java.nio.charset.Charset;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Runs external tools with a deadline, a limit of concurrent children and a circuit breaker.
+ * <p>
+ * Children outliving their deadline are killed together with their descendants, stderr is drained and kept
+ * for the error message, and non-zero exit codes are failures. After <b>threshold</b> consecutive failures
+ * calls fail fast for a delay growing from 1 second to 1 minute, then one trial call decides whether the tool works again
+ */
+public class ProcessSupervisor {
+    private static final long FIRST_BACKOFF = 1_000_000_000L;
+    private static final long LAST_BACKOFF = 60_000_000_000L;
+    private static final int STDERR_LIMIT = 4096;
+    private static final ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "Process Watchdog");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static final ExecutorService drainers = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "Process Drainer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Semaphore permits;
+    private final int threshold;
+    // Circuit breaker state, only touched under the lock
+    private int failures = 0;
+    private long backoff = 0;
+    private long openUntil = 0;
+    private boolean isTrial = false;
+
+    /**
+     * @param concurrency maximum amount of running children
+     * @param threshold   consecutive failures opening the circuit
+     */
+    ProcessSupervisor(int concurrency, int threshold) {
+        this.permits = new Semaphore(concurrency, true);
+        this.threshold = threshold;
+    }
+
+    /**
+     * Runs <b>command</b> and waits until it exits
+     * @param timeout deadline in milliseconds, including the wait for a free slot
+     * @param command command line
+     * @throws IOException thrown if the command can't be started, fails, times out or the circuit is open
+     */
+    public void run(long timeout, String... command) throws IOException {
+        run(timeout, null, command);
+    }
+
+    /**
+     * Runs <b>command</b>, passes it's output to <b>output</b> and waits until it exits
+     * @param timeout deadline in milliseconds, including the wait for a free slot
+     * @param output  consumer of stdout, <b>null</b> - output is discarded
+     * @param command command line
+     * @throws IOException thrown if the command can't be started, fails, times out or the circuit is open
+     */
+    public void run(long timeout, Output output, String... command) throws IOException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+        boolean trial = admit(command);
+
+        try {
+            if (!permits.tryAcquire(timeout, TimeUnit.MILLISECONDS)) {
+                abandon(trial);
+                throw new IOException("Too many running " + command[0] + ", gave up waiting after " + timeout + " ms");
+            }
+        } catch (InterruptedException e) {
+            abandon(trial);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting to run " + command[0]);
+        }
+
+        // Slot freed up too late to run anything
+        if (System.nanoTime() - deadline >= 0) {
+            permits.release();
+            abandon(trial);
+            throw new IOException("Too many running " + command[0] + ", gave up waiting after " + timeout + " ms");
+        }
+
+        try {
+            supervise(deadline, output, command);
+            succeeded(trial);
+        } catch (InterruptedIOException e) {
+            abandon(trial);
+            throw e;
+        } catch (IOException | RuntimeException | Error e) {
+            // Broken output consumer counts as a failure too, an unresolved trial would keep the circuit open for good
+            failed(trial);
+            throw e;
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Starts <b>command</b> that keeps running on it's own, like a window of the tool. It's not waited for
+     * @param command command line
+     * @throws IOException thrown if the command can't be started
+     */
+    public void launch(String... command) throws IOException {
+        new ProcessBuilder(command)
+            .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+            .redirectError(ProcessBuilder.Redirect.DISCARD)
+            .start();
+    }
+
+    private void supervise(long deadline, Output output, String[] command) throws IOException {
+        ProcessBuilder builder = new ProcessBuilder(command);
+        if (output == null) builder.redirectOutput(ProcessBuilder.Redirect.DISCARD);
+        Process process = builder.start();
+        Future<String> stderr = drainers.submit(() -> drain(process.getErrorStream()));
+
+        // Killing the child ends it's output, so blocked reads return
+        AtomicBoolean timedOut = new AtomicBoolean(false);
+        ScheduledFuture<?> watch = watchdog.schedule(() -> {
+            if (!process.isAlive()) return;
+            timedOut.set(true);
+            kill(process);
+        }, deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+
+        boolean exited = false;
+        try {
+            if (output != null)
+                try (InputStream in = process.getInputStream()) {
+                    output.read(in);
+                }
+            if (!process.waitFor(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+                timedOut.set(true);
+                kill(process);
+                process.waitFor();
+            }
+            exited = true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for " + command[0]);
+        } catch (IOException e) {
+            if (!timedOut.get()) throw e;
+        } finally {
+            watch.cancel(false);
+            // Nothing waits for the child after any failure, including unchecked ones of the output consumer
+            if (!exited) kill(process);
+        }
+
+        if (timedOut.get())
+            throw new IOException(String.join(" ", command) + " timed out and was killed");
+        if (process.exitValue() != 0)
+            throw new IOException(command[0] + " exited with code " + process.exitValue() + errors(stderr));
+    }
+
+    private static void kill(Process process) {
+        process.descendants().forEach(ProcessHandle::destroyForcibly);
+        process.destroyForcibly();
+    }
+
+    /**
+     * Reads <b>in</b> until it's end, keeping only the first <b>STDERR_LIMIT</b> bytes
+     */
+    private static String drain(InputStream in) throws IOException {
+        try (in) {
+            ByteArrayOutputStream kept = new ByteArrayOutputStream();
+            byte[] buffer = new byte[1024];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                if (kept.size() < STDERR_LIMIT) kept.write(buffer, 0, Math.min(read, STDERR_LIMIT - kept.size()));
+            }
+            return kept.toString(Charset.defaultCharset()).trim();
+        }
+    }
+
+    private static String errors(Future<String> stderr) {
+        try {
+            String errors = stderr.get(1, TimeUnit.SECONDS);
+            return errors.isEmpty() ? "" : ": " + errors.replace('\n', ' ').replace("\r", "");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return "";
+        } catch (ExecutionException | TimeoutException e) {
+            return "";
+        }
+    }
+
+    /**
+     * Lets the call through unless the circuit is open. Once the delay passes, only one trial call is let through
+     * @return T - the call is the trial, it's owner has to end it
+     */
+    private synchronized boolean admit(String[] command) throws IOException {
+        if (failures < threshold) return false;
+
+        long now = System.nanoTime();
+        if (isTrial || now - openUntil < 0)
+            throw new IOException(command[0] + " keeps failing, next try in " + Math.max(0, (openUntil - now) / 1_000_000_000L + 1) + " s");
+        isTrial = true;
+        return true;
+    }
+
+    // Calls admitted before the circuit opened may end while the trial is still running, they leave it alone
+    private synchronized void succeeded(boolean trial) {
+        failures = 0;
+        backoff = 0;
+        if (trial) isTrial = false;
+    }
+
+    private synchronized void failed(boolean trial) {
+        failures++;
+        if (trial) isTrial = false;
+        if (failures >= threshold) {
+            backoff = backoff == 0 ? FIRST_BACKOFF : Math.min(backoff * 2, LAST_BACKOFF);
+            openUntil = System.nanoTime() + backoff;
+        }
+    }
+
+    /**
+     * Gives the trial back if the call didn't reach the tool
+     */
+    private synchronized void abandon(boolean trial) {
+        if (trial) isTrial = false;
+    }
+
+    /**
+     * Consumer of the child's stdout
+     */
+    public interface Output {
+        void read(InputStream in) throws IOException;
+    }
+}
@@ -0,0 +1,224 @@
+package org.urobbyu;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.function.Predicate;
+
+/**
+ * Applies routing profile, or one command to every process of an app, as one batch.
+ * Every running process matching a rule is commanded independently, at most <b>parallelism</b> at a time
+ */
+public class ProfileBatch {
+    private final AudioBackend backend;
+    // Shared by every batch, idle workers end on their own
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * @param backend     receiver of the commands
+     * @param parallelism amount of commands running at the same time
+     */
+    public ProfileBatch(AudioBackend backend, int parallelism) {
+        this.backend = backend;
+        int threads = Math.max(1, parallelism);
+        this.executor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+            Thread thread = new Thread(r, "Profile Worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Switches every process covered by <b>rules</b> and waits until all of them finish.
+     * Processes already playing on their device are not touched
+     * @param name  name of the profile
+     * @param rules device IDs by process path
+     * @param data  snapshot to find processes in
+     * @return report with result of every rule
+     * @throws InterruptedIOException thrown if waiting thread was interrupted
+     */
+    public Report apply(String name, Map<String, String> rules, AudioSnapshot data) throws InterruptedIOException {
+        long start = System.nanoTime();
+        List<Result> results = new ArrayList<>();
+        List<Callable<Result>> commands = new ArrayList<>();
+
+        for (Map.Entry<String, String> rule : rules.entrySet()) {
+            String device = rule.getValue();
+            fanOut(rule.getKey(), device, data, session -> session.deviceId.equals(device),
+                processId -> backend.setAppDefault(device, processId), results, commands);
+        }
+
+        return run("Profile '" + name + "'", results, commands, start);
+    }
+
+    /**
+     * Switches every process of the <b>app</b> to the <b>device</b>
+     * @param app    process path
+     * @param device device ID
+     * @param data   snapshot to find processes in
+     * @return report with result of every process
+     * @throws InterruptedIOException thrown if waiting thread was interrupted
+     */
+    public Report switchApp(String app, String device, AudioSnapshot data) throws InterruptedIOException {
+        long start = System.nanoTime();
+        List<Result> results = new ArrayList<>();
+        List<Callable<Result>> commands = new ArrayList<>();
+        fanOut(app, device, data, session -> session.deviceId.equals(device), processId -> backend.setAppDefault(device, processId), results, commands);
+        return run(app, results, commands, start);
+    }
+
+    /**
+     * Mutes or unmutes every process of the <b>app</b>
+     * @param app  process path
+     * @param mute T - mute, F - unmute
+     * @param data snapshot to find processes in
+     * @return report with result of every process
+     * @throws InterruptedIOException thrown if waiting thread was interrupted
+     */
+    public Report muteApp(String app, boolean mute, AudioSnapshot data) throws InterruptedIOException {
+        long start = System.nanoTime();
+        List<Result> results = new ArrayList<>();
+        List<Callable<Result>> commands = new ArrayList<>();
+        fanOut(app, mute ? "mute" : "unmute", data, session -> session.muted == mute, processId -> backend.setMute(processId, mute), results, commands);
+        return run(app, results, commands, start);
+    }
+
+    /**
+     * Changes volume of every process of the <b>app</b>
+     * @param app     process path
+     * @param percent volume from 0 to 100
+     * @param data    snapshot to find processes in
+     * @return report with result of every process
+     * @throws InterruptedIOException thrown if waiting thread was interrupted
+     */
+    public Report setAppVolume(String app, int percent, AudioSnapshot data) throws InterruptedIOException {
+        long start = System.nanoTime();
+        List<Result> results = new ArrayList<>();
+        List<Callable<Result>> commands = new ArrayList<>();
+        fanOut(app, percent + "%", data, session -> session.volume == percent, processId -> backend.setAppVolume(processId, percent), results, commands);
+        return run(app, results, commands, start);
+    }
+
+    /**
+     * Plans <b>call</b> for every running process of the <b>app</b> that isn't <b>done</b> yet
+     * @param target device or action reported in the results
+     */
+    private void fanOut(String app, String target, AudioSnapshot data, Predicate<AudioSnapshot.Session> done, Call call,
+                        List<Result> results, List<Callable<Result>> commands) {
+        boolean running = false;
+        for (AudioSnapshot.Session session : data.sessions()) {
+            // Process restored from the cache is gone, so there's nothing to command
+            if (!session.processPath.equals(app) || session.stale) continue;
+            running = true;
+
+            if (done.test(session))
+                results.add(new Result(app, target, session.processId, null, 0));
+            else
+                commands.add(() -> call(app, target, session.processId, call));
+        }
+        if (!running) results.add(new Result(app, target, null, "Not running", 0));
+    }
+
+    /**
+     * Runs planned <b>commands</b> and waits until all of them finish
+     */
+    private Report run(String name, List<Result> results, List<Callable<Result>> commands, long start) throws InterruptedIOException {
+        if (!commands.isEmpty()) {
+            try {
+                for (Future<Result> future : executor.invokeAll(commands)) results.add(future.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while applying " + name);
+            } catch (ExecutionException e) {
+                // Commands catch their own failures
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+
+        return new Report(name, results, System.nanoTime() - start);
+    }
+
+    private Result call(String app, String target, String processId, Call call) {
+        long start = System.nanoTime();
+        try {
+            call.run(processId);
+            return new Result(app, target, processId, null, System.nanoTime() - start);
+        } catch (IOException e) {
+            return new Result(app, target, processId, String.valueOf(e.getMessage()), System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Command for one process
+     */
+    private interface Call {
+        void run(String processId) throws IOException;
+    }
+
+    /**
+     * Outcome of one rule for one process
+     */
+    public static final class Result {
+        public final String app;
+        /** Device ID, or the action of batches that don't route */
+        public final String device;
+        /** <b>null</b> if app isn't running */
+        public final String processId;
+        /** <b>null</b> if rule was applied */
+        public final String error;
+        public final long nanos;
+
+        Result(String app, String device, String processId, String error, long nanos) {
+            this.app = app;
+            this.device = device;
+            this.processId = processId;
+            this.error = error;
+            this.nanos = nanos;
+        }
+
+        @Override
+        public String toString() {
+            return (error == null ? "  OK     " : "  FAILED ") + app + (processId == null ? "" : " (" + processId + ")") +
+                " -> " + device + (error == null ? "" : ": " + error) + String.format(" [%.1f ms]", nanos / 1e6);
+        }
+    }
+
+    /**
+     * Outcome of the whole batch
+     */
+    public static final class Report {
+        /** Title of the batch, e.g. <b>Profile 'Gaming'</b> or process path */
+        public final String name;
+        public final List<Result> results;
+        public final long nanos;
+
+        Report(String name, List<Result> results, long nanos) {
+            this.name = name;
+            this.results = Collections.unmodifiableList(results);
+            this.nanos = nanos;
+        }
+
+        /**
+         * Counts results without errors
+         * @return amount
+         */
+        public int succeeded() {
+            int succeeded = 0;
+            for (Result result : results) if (result.error == null) succeeded++;
+            return succeeded;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder report = new StringBuilder(String.format("%s: %d of %d applied in %.1f ms",
+                name, succeeded(), results.size(), nanos / 1e6));
+            for (Result result : results) report.append('\n').append(result);
+            return report.toString();
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package org.urobbyu;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Named routing profiles, every profile maps <b>app path</b> to the device it should play on.
+ * Loaded profiles are ordered by name and their rules by <b>N</b>, since properties don't keep the file order
+ */
+public class ProfileStore {
+    private static final Pattern KEY = Pattern.compile("(.+)\\.(app|device)(\\d+)");
+
+    private final Map<String, Map<String, String>> profiles = new LinkedHashMap<>();
+
+    /**
+     * Adds rule to the <b>profile</b>, replacing previous rule of the <b>app</b>
+     * @param profile name of the profile
+     * @param app     process path
+     * @param device  ID of the sound output device
+     */
+    public synchronized void put(String profile, String app, String device) {
+        profiles.computeIfAbsent(profile, k -> new LinkedHashMap<>()).put(app, device);
+    }
+
+    /**
+     * Retrieves names of every profile
+     * @return names
+     */
+    public synchronized List<String> names() {
+        return new ArrayList<>(profiles.keySet());
+    }
+
+    /**
+     * Retrieves rules of the <b>profile</b>
+     * @param profile name of the profile
+     * @return device IDs by process path, empty if there's no such profile
+     */
+    public synchronized Map<String, String> rules(String profile) {
+        Map<String, String> rules = profiles.get(profile);
+        return rules == null ? Collections.emptyMap() : new LinkedHashMap<>(rules);
+    }
+
+    /**
+     * Loads rules stored as <b>name.appN</b> and <b>name.deviceN</b> properties
+     * @param in properties file
+     * @throws IOException thrown if file can't be read
+     */
+    public void load(InputStream in) throws IOException {
+        Properties properties = new Properties();
+        properties.load(in);
+        load(properties);
+    }
+
+    /**
+     * Loads rules stored as <b>name.appN</b> and <b>name.deviceN</b> properties
+     * @param properties properties
+     */
+    public synchronized void load(Properties properties) {
+        // Keeping the numeric order inside every profile, gaps are skipped
+        SortedMap<String, SortedMap<Integer, String>> indexes = new TreeMap<>();
+        for (String key : properties.stringPropertyNames()) {
+            Matcher matcher = KEY.matcher(key);
+            if (!matcher.matches() || !matcher.group(2).equals("app")) continue;
+            try {
+                indexes.computeIfAbsent(matcher.group(1), k -> new TreeMap<>()).put(Integer.parseInt(matcher.group(3)), matcher.group(3));
+            } catch (NumberFormatException ignored) {}
+        }
+
+        for (Map.Entry<String, SortedMap<Integer, String>> profile : indexes.entrySet()) {
+            for (String index : profile.getValue().values()) {
+                String device = properties.getProperty(profile.getKey() + ".device" + index);
+                if (device != null) put(profile.getKey(), properties.getProperty(profile.getKey() + ".app" + index), device);
+            }
+        }
+    }
+}
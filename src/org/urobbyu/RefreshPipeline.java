@@ -0,0 +1,84 @@
+package org.urobbyu;
+
+import java.awt.EventQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Single-writer refresh: decodes and builds snapshot on the calling background thread,
+ * publishes it through one atomic reference and hands it to the event thread in one step
+ */
+public class RefreshPipeline {
+    private final InputDecoder inputDecoder;
+    private final Consumer<AudioSnapshot> apply;
+    private final AtomicReference<AudioSnapshot> published;
+    // Anything else published came from a reload
+    private final AudioSnapshot initial;
+    private final AtomicBoolean isApplyPending = new AtomicBoolean(false);
+    private volatile boolean failed;
+
+    /**
+     * @param inputDecoder source of snapshots
+     * @param apply        menu update performed on the event thread
+     */
+    RefreshPipeline(InputDecoder inputDecoder, Consumer<AudioSnapshot> apply) {
+        this.inputDecoder = inputDecoder;
+        this.apply = apply;
+        this.initial = inputDecoder.getSnapshot();
+        this.published = new AtomicReference<>(initial);
+        this.failed = inputDecoder.isFailed();
+    }
+
+    /**
+     * Reloads snapshot and schedules menu update if anything changed, including failure of the reload.
+     * Must only be called from one thread at a time
+     * @return T - snapshot changed
+     */
+    public boolean refresh() {
+        AudioSnapshot snapshot = inputDecoder.reload().getSnapshot();
+        boolean failed = inputDecoder.isFailed();
+        if (snapshot.equals(published.get()) && failed == this.failed) return false;
+
+        published.set(snapshot);
+        this.failed = failed;
+        scheduleApply();
+        return true;
+    }
+
+    /**
+     * Publishes <b>snapshot</b> restored from somewhere else, the next reload replaces it.
+     * It's ignored if a reload already published anything, restored snapshot is only older
+     * @param snapshot snapshot
+     */
+    public void restore(AudioSnapshot snapshot) {
+        if (!published.compareAndSet(initial, snapshot)) return;
+        inputDecoder.restore(snapshot);
+        scheduleApply();
+    }
+
+    private void scheduleApply() {
+        // Update that is still waiting for the event thread picks up the newer snapshot on it's own
+        if (isApplyPending.compareAndSet(false, true))
+            EventQueue.invokeLater(() -> {
+                isApplyPending.set(false);
+                apply.accept(published.get());
+            });
+    }
+
+    /**
+     * Retrieves last published snapshot
+     * @return snapshot
+     */
+    public AudioSnapshot current() {
+        return published.get();
+    }
+
+    /**
+     * Checks if the last reload failed
+     * @return T - failed
+     */
+    public boolean isFailed() {
+        return failed;
+    }
+}
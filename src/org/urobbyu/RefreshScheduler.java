@@ -0,0 +1,96 @@
+package org.urobbyu;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Runs refresh task with adaptive interval.
+ * Interval drops to <b>floor</b> after every change and doubles up to <b>ceiling</b> while nothing changes
+ */
+public class RefreshScheduler {
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "Refresher");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final BooleanSupplier task;
+    private final long floor;
+    private final long ceiling;
+
+    private long interval;
+    private ScheduledFuture<?> next;
+    private boolean running = false;
+    private boolean rerun = false;
+
+    /**
+     * @param task    refresh, returns T if anything changed
+     * @param floor   shortest interval in milliseconds
+     * @param ceiling longest interval in milliseconds
+     */
+    RefreshScheduler(BooleanSupplier task, long floor, long ceiling) {
+        this.task = task;
+        this.floor = floor;
+        this.ceiling = Math.max(floor, ceiling);
+        this.interval = floor;
+    }
+
+    /**
+     * Refreshes as soon as possible and polls faster afterwards.
+     * Joins refresh that is already pending or running instead of adding another one
+     */
+    public synchronized void trigger() {
+        interval = floor;
+
+        if (running) {
+            rerun = true;
+            return;
+        }
+        if (next != null && next.getDelay(TimeUnit.MILLISECONDS) <= 0) return;
+
+        schedule(0);
+    }
+
+    /**
+     * Stops refreshing
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void run() {
+        synchronized (this) {
+            running = true;
+            next = null;
+        }
+
+        boolean changed = false;
+        try {
+            changed = task.getAsBoolean();
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        }
+
+        synchronized (this) {
+            running = false;
+            interval = changed ? floor : Math.min(interval * 2, ceiling);
+
+            if (rerun) {
+                rerun = false;
+                schedule(0);
+            } else
+                schedule(interval);
+        }
+    }
+
+    /**
+     * Replaces pending refresh with one in <b>delay</b> milliseconds
+     */
+    private void schedule(long delay) {
+        if (executor.isShutdown()) return;
+        if (next != null) next.cancel(false);
+        next = executor.schedule(this::run, delay, TimeUnit.MILLISECONDS);
+    }
+}
@@ -0,0 +1,138 @@
+package org.urobbyu;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Last applied snapshot kept on disk, so menus can be shown before the first reload finishes.
+ * <p>
+ * Format is <b>magic</b>, <b>version</b>, then sessions and devices as counted lists of <b>DataOutput</b> strings.
+ * Files of any other version are ignored
+ */
+public class SnapshotCache {
+    private static final int MAGIC = 0x534D5343; // SMSC
+    private static final int VERSION = 2;
+
+    private final Path file;
+
+    /**
+     * @param file cache file
+     */
+    public SnapshotCache(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * Loads cached snapshot, sessions of processes that are gone are marked stale
+     * @return snapshot, <b>null</b> if there's no readable cache
+     */
+    public AudioSnapshot load() {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            return read(in);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Replaces cached snapshot. File is replaced in one step, so it's never left half written
+     * @param snapshot snapshot
+     */
+    public synchronized void save(AudioSnapshot snapshot) {
+        try {
+            Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                write(snapshot, out);
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Writes <b>snapshot</b> in the cache format
+     * @param snapshot snapshot
+     * @param out      output
+     * @throws IOException thrown if output can't be written
+     */
+    public static void write(AudioSnapshot snapshot, DataOutput out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+
+        out.writeInt(snapshot.sessions().size());
+        for (AudioSnapshot.Session session : snapshot.sessions()) {
+            out.writeUTF(session.name);
+            out.writeBoolean(session.muted);
+            out.writeUTF(session.processId);
+            out.writeUTF(session.processPath);
+            out.writeUTF(session.deviceId);
+            out.writeByte(session.volume);
+        }
+
+        out.writeInt(snapshot.devices().size());
+        for (AudioSnapshot.Device device : snapshot.devices()) {
+            out.writeUTF(device.name);
+            out.writeUTF(device.itemId);
+            out.writeUTF(device.subName);
+            out.writeByte(device.volume);
+        }
+    }
+
+    /**
+     * Reads snapshot in the cache format
+     * @param in input
+     * @return snapshot, <b>null</b> if input is of another format or version
+     * @throws IOException thrown if input can't be read or is corrupted
+     */
+    public static AudioSnapshot read(DataInput in) throws IOException {
+        if (in.readInt() != MAGIC || in.readInt() != VERSION) return null;
+
+        int count = readCount(in);
+        List<AudioSnapshot.Session> sessions = new ArrayList<>(Math.min(count, 1024));
+        for (int i = 0; i < count; i++) {
+            String name = in.readUTF();
+            boolean muted = in.readBoolean();
+            String processId = in.readUTF();
+            String processPath = in.readUTF();
+            String deviceId = in.readUTF();
+            int volume = in.readByte();
+            sessions.add(new AudioSnapshot.Session(name, muted, processId, processPath, deviceId, volume, isGone(processId, processPath)));
+        }
+
+        count = readCount(in);
+        List<AudioSnapshot.Device> devices = new ArrayList<>(Math.min(count, 64));
+        for (int i = 0; i < count; i++)
+            devices.add(new AudioSnapshot.Device(in.readUTF(), in.readUTF(), in.readUTF(), in.readByte()));
+
+        return AudioSnapshot.of(sessions, devices);
+    }
+
+    private static int readCount(DataInput in) throws IOException {
+        int count = in.readInt();
+        if (count < 0) throw new IOException("Corrupted snapshot cache, negative count " + count);
+        return count;
+    }
+
+    /**
+     * Checks if the process is not running anymore, or it's ID was taken by another executable
+     */
+    private static boolean isGone(String processId, String processPath) {
+        Optional<ProcessHandle> process;
+        try {
+            process = ProcessHandle.of(Long.parseLong(processId));
+        } catch (NumberFormatException e) {
+            return true;
+        }
+        if (process.isEmpty() || !process.get().isAlive()) return true;
+
+        Optional<String> command = process.get().info().command();
+        return command.isPresent() && !command.get().equalsIgnoreCase(processPath);
+    }
+}
@@ -1,15 +1,14 @@
 package org.urobbyu;
 
-import javax.imageio.ImageIO;
 import java.awt.*;
 import java.awt.event.*;
-import java.awt.image.BufferedImage;
 import java.io.*;
+import java.nio.file.Paths;
 import java.text.ParseException;
 import java.util.*;
 import java.util.List;
-
-import static org.urobbyu.InputDecoder.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 
 /**
  * Sound Menu program
@@ -18,31 +17,30 @@ import static org.urobbyu.InputDecoder.*;
  * @since 1.0
  */
 public class SoundMenu {
-    private static final Properties favorites = new Properties();
-    private static final Refresher refresher = new Refresher();
+    private static final FavoritesStore favorites = new FavoritesStore();
+    private static final ProfileStore profiles = new ProfileStore();
+    private static final SnapshotCache snapshotCache = new SnapshotCache(Paths.get("snapshot.dat"));
+    private static RefreshScheduler refresher;
     private static final Shutdowner shutdowner = new Shutdowner();
     private static final PopupMenu mainPopup = new PopupMenu();
     private static final PopupMenu favPopup = new PopupMenu();
 
     private static final Menu appsMenu = new Menu("Apps");
     private static final Menu favoritesMenu = new Menu("Favorites");
+    private static final Menu profilesMenu = new Menu("Profiles");
     private static final MenuItem refreshItem = new MenuItem("(Refresh)");
     private static final MenuItem settingsItem = new MenuItem("Sound Settings");
     private static final MenuItem soundVolumeViewItem = new MenuItem("SoundVolumeView");
     private static final MenuItem exitItem = new MenuItem("Exit");
-    private static final MenuItem editFavoriteItem = new MenuItem("Edit");
-    private static final MenuItem clearFavoriteItem = new MenuItem("Remove All");
 
-    private static final TrayIcon trayIcon = new TrayIcon(loadIcon("icon.png"), "Sound Menu", favPopup);
+    private static final MenuDispatcher dispatcher = new MenuDispatcher();
+    private static final AwtMenuReconciler reconciler = new AwtMenuReconciler(dispatcher, dispatcher);
+
+    private static final IconCache icons = IconCache.forScreen();
+    private static final TrayIcon trayIcon = new TrayIcon(icons.get("icon.png", IconCache.Badge.NONE), "Sound Menu", favPopup);
 
-    private static final List<String> processNames = new ArrayList<>();
-    private static final List<String> processMuted = new ArrayList<>();
-    private static final List<String> processIds = new ArrayList<>();
-    private static final List<String> processPaths = new ArrayList<>();
-    private static final List<String> processDevices = new ArrayList<>();
-    private static final List<String> deviceNames = new ArrayList<>();
-    private static final List<String> deviceIds = new ArrayList<>();
-    private static final List<String> deviceSubNames = new ArrayList<>();
+    private static RefreshPipeline pipeline;
+    private static MenuBuilder menuBuilder;
 
     private static boolean noFav = false;
     private static boolean isFullMenu = false;
@@ -51,13 +49,32 @@ public class SoundMenu {
     private static boolean includeOptions = true;
     private static boolean doubleClickSwitch = true;
     private static boolean simpleMenu = false;
+    private static boolean groupApps = false;
     private static boolean noInfo = false;
+    private static boolean autoRoute = false;
     private static boolean showHelp = false;
-
+    private static long refreshFloor = 2;
+    private static long refreshCeiling = 60;
+    private static long statsPeriod = 0;
+    // Taken by the refresher once the first live reload is published
+    private static volatile String startProfile = null;
+    private static int controlPort = 0;
+    private static ControlServer controlServer = null;
+    private static final Set<String> CONTROL_COMMANDS = Set.of("switch", "mute", "volume", "master", "favorite", "profile", "refresh", "dump", "stats");
+
+    // Owned by the event thread once the icon is added
+    private static AudioSnapshot data = AudioSnapshot.EMPTY;
     private static boolean isEditMode = false;
     private static boolean isFavMode = true;
+    private static boolean isAppsMenuDirty = true;
+    private static Image currentIcon = null;
 
-    private static final InputDecoder inputDecoder = new InputDecoder();
+    private static final AudioBackend backend = AudioBackend.create();
+    private static final InputDecoder inputDecoder = new InputDecoder(backend);
+    private static final CommandQueue commandQueue = new CommandQueue(() -> refresher.trigger());
+    private static final long VOLUME_DEBOUNCE = 300;
+    private static final ProfileBatch profileBatch = new ProfileBatch(backend, 4);
+    private static final AutoRouter autoRouter = new AutoRouter(favorites, commandQueue, backend);
 
     /**
      * Start of the program
@@ -78,13 +95,33 @@ public class SoundMenu {
             return;
         } catch (IOException ignored) {}
 
+        try {
+            profiles.load(new FileInputStream("profiles.properties"));
+        } catch (IOException ignored) {}
+
         // Checking if system supports the whole thing i'm trying to do
         if (!SystemTray.isSupported()) return;
 
         // Getting SystemTray instance
         SystemTray systemTray = SystemTray.getSystemTray();
 
-        // Building icon menu
+        menuBuilder = new MenuBuilder(noInfo, simpleMenu, groupApps);
+
+        pipeline = new RefreshPipeline(inputDecoder, SoundMenu::apply);
+        // Backend that pushes changes only needs polling as a rare fallback
+        long ceiling = backend.isPushing() ? Math.max(refreshCeiling, 3600) : refreshCeiling;
+        refresher = new RefreshScheduler(() -> {
+            boolean changed = pipeline.refresh();
+            if (changed) snapshotCache.save(pipeline.current());
+            // Cached snapshot may list processes that are long gone, so profile waits for a live one
+            if (startProfile != null && !pipeline.isFailed()) {
+                String name = startProfile;
+                startProfile = null;
+                applyProfile(name);
+            }
+            return changed;
+        }, refreshFloor * 1000, ceiling * 1000);
+        backend.setChangeListener(refresher::trigger);
         refreshData();
         refreshAppsMenu();
         refreshFavorites();
@@ -94,6 +131,12 @@ public class SoundMenu {
             mainPopup.add(favoritesMenu);
         }
 
+        if (!profiles.names().isEmpty()) {
+            reconciler.reconcile(profilesMenu, menuBuilder.profilesMenu(profiles.names()));
+            mainPopup.addSeparator();
+            mainPopup.add(profilesMenu);
+        }
+
         mainPopup.addSeparator();
         mainPopup.add(appsMenu);
         mainPopup.addSeparator();
@@ -110,16 +153,10 @@ public class SoundMenu {
         mainPopup.addSeparator();
 
         trayIcon.setImageAutoSize(true);
-        makeBold(exitItem, favoritesMenu, appsMenu, favPopup);
-        makePlain(editFavoriteItem, clearFavoriteItem);
+        makeBold(exitItem, favoritesMenu, profilesMenu, appsMenu, favPopup);
 
         // Setting up action handlers
-        refreshItem.addActionListener(e -> {
-            inputDecoder.reload();
-            refreshData();
-            refreshAppsMenu();
-            refreshFavorites();
-        });
+        refreshItem.addActionListener(e -> refreshNow());
 
         if (includeOptions) {
             settingsItem.addActionListener(e -> openApp(true));
@@ -130,25 +167,45 @@ public class SoundMenu {
         Runtime.getRuntime().addShutdownHook(shutdowner);
         exitItem.addActionListener(shutdowner);
 
-        clearFavoriteItem.addActionListener(e -> {
-            favorites.clear();
-            refreshFavorites();
-        });
-
-        editFavoriteItem.addActionListener(SoundMenu::switchEditMode);
-
         if (doubleClickSwitch)
             trayIcon.addActionListener(SoundMenu::switchFavMode);
         else
             trayIcon.addActionListener(shutdowner);
 
+        // Menu is about to be opened, so it's worth having it fresh
+        trayIcon.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mousePressed(MouseEvent e) {
+                if (!isFavMode) buildAppsMenu();
+                refreshNow();
+            }
+        });
+
         if (isFullMenu) switchFavMode(null);
 
         // Adding my icon program to system tray
         systemTray.add(trayIcon);
 
-        // Setting automatic application list refresher to refresh it every 30 seconds
-        refresher.start();
+        // Everything that can wait runs after the icon is shown. Menus are filled from the last known snapshot,
+        // checking if it's processes still run takes a while, the real snapshot is loaded in the background
+        AudioSnapshot cached = snapshotCache.load();
+        if (cached != null) pipeline.restore(cached);
+
+        // Setting automatic application list refresher, it polls faster after changes and slows down while idle.
+        // Start-up profile is applied after the first reload
+        refresher.trigger();
+
+        Metrics.register();
+        if (statsPeriod > 0) Metrics.startDump(statsPeriod);
+
+        if (controlPort > 0) {
+            try {
+                controlServer = new ControlServer(controlPort, CONTROL_COMMANDS, SoundMenu::control);
+                controlServer.start();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
     }
 
     /**
@@ -175,10 +232,39 @@ public class SoundMenu {
                 case "se":
                 case "sm":
                 case "ni":
+                case "ar":
+                case "g":
                 case "?":
                 case "help":
                     if (!s.contains(arg)) s.add(arg);
                     break;
+                case "p":
+                    if (++i >= args.length) throw new ParseException("Invalid value of argument: " + arg, i);
+                    startProfile = args[i];
+                    break;
+                case "port":
+                    try {
+                        controlPort = Integer.parseInt(args[++i]);
+                    } catch (IndexOutOfBoundsException | NumberFormatException e) {
+                        throw new ParseException("Invalid value of argument: " + arg, i);
+                    }
+                    if (controlPort <= 0 || controlPort > 65535) throw new ParseException("Invalid value of argument: " + arg, i);
+                    break;
+                case "rmin":
+                case "rmax":
+                case "st":
+                    long seconds;
+                    try {
+                        seconds = Long.parseLong(args[++i]);
+                    } catch (IndexOutOfBoundsException | NumberFormatException e) {
+                        throw new ParseException("Invalid value of argument: " + arg, i);
+                    }
+                    if (seconds <= 0) throw new ParseException("Invalid value of argument: " + arg, i);
+
+                    if (arg.equals("rmin")) refreshFloor = seconds;
+                    else if (arg.equals("rmax")) refreshCeiling = seconds;
+                    else statsPeriod = seconds;
+                    break;
                 default:
                     throw new ParseException("Invalid argument: " + arg, i);
             }
@@ -201,6 +287,10 @@ public class SoundMenu {
         if (s.contains("sm")) simpleMenu = true;
 
         if (s.contains("ni")) noInfo = true;
+
+        if (s.contains("ar") && !noFav) autoRoute = true;
+
+        if (s.contains("g")) groupApps = true;
     }
 
     /**
@@ -209,7 +299,9 @@ public class SoundMenu {
     private static void showHelp() {
         System.out.println(
             "\n/-------------------------------------------------------------\\\n" +
-            "| start.cmd [-nf | (-nfl | -nfs | -se | -fm)] [-no]           |\n" +
+            "| start.cmd [-nf | (-nfl | -nfs | -se | -fm | -ar)] [-no]     |\n" +
+            "|           [-rmin <sec>] [-rmax <sec>] [-st <sec>] [-g]      |\n" +
+            "|           [-p <profile>] [-port <port>]                     |\n" +
             "|------------------------|Description|------------------------|\n" +
             "|    Little sound mapping java tray application.              |\n" +
             "|-----------------------|Argument List|-----------------------|\n" +
@@ -230,10 +322,37 @@ public class SoundMenu {
             "|            skipping this menu.                              |\n" +
             "|                                                             |\n" +
             "|    -ni     Hides IDs of processes and SubNames of devices.  |\n" +
+            "|                                                             |\n" +
+            "|    -ar     Routes newly started apps to their favorite      |\n" +
+            "|            device if they have exactly one.                 |\n" +
+            "|                                                             |\n" +
+            "|    -g      Shows processes of one executable as a single    |\n" +
+            "|            app, commands are sent to all of them at once.   |\n" +
+            "|                                                             |\n" +
+            "|    -rmin   Shortest refresh interval in seconds, used right |\n" +
+            "|            after changes. Default is 2.                     |\n" +
+            "|                                                             |\n" +
+            "|    -rmax   Longest refresh interval in seconds, reached     |\n" +
+            "|            while nothing changes. Default is 60.            |\n" +
+            "|                                                             |\n" +
+            "|    -st     Prints reload, menu and command statistics to    |\n" +
+            "|            the console every <sec> seconds.                 |\n" +
+            "|                                                             |\n" +
+            "|    -p      Applies routing profile from profiles.properties |\n" +
+            "|            on start.                                        |\n" +
+            "|                                                             |\n" +
+            "|    -port   Accepts commands on the local TCP port:          |\n" +
+            "|            switch <app> <device>, mute <app> [on|off],      |\n" +
+            "|            volume <app> <percent>,                          |\n" +
+            "|            master <device> <percent>,                       |\n" +
+            "|            favorite <app> [n], profile <name>, refresh,     |\n" +
+            "|            dump, stats. App is process ID or path, path     |\n" +
+            "|            commands every process of the executable.        |\n" +
             "|-------------------------|Examples-|-------------------------|\n" +
             "|   start.cmd -nf                                             |\n" +
             "|   start.cmd /nf --no                                        |\n" +
             "|   start.cmd -nfl /nfs --se -fm /no                          |\n" +
+            "|   start.cmd -rmin 5 -rmax 300                               |\n" +
             "\\-------------------------------------------------------------/\n"
         );
     }
@@ -245,23 +364,36 @@ public class SoundMenu {
     private static void makeBold(MenuComponent... components) { for (MenuComponent c : components) c.setFont(new Font(Font.DIALOG, Font.BOLD, 12)); }
 
     /**
-     * Sets menu item's font style to bold
-     * @param components menu items
+     * Shows icon of the current mode with badge of the current state
      */
-    private static void makePlain(MenuComponent... components) { for (MenuComponent c : components) c.setFont(new Font(Font.DIALOG, Font.PLAIN, 12)); }
+    private static void updateIcon() {
+        IconCache.Badge badge = IconCache.Badge.NONE;
+        if (pipeline != null && pipeline.isFailed()) badge = IconCache.Badge.REFRESH_FAILED;
+        else if (isAllMuted()) badge = IconCache.Badge.ALL_MUTED;
+        else if (!noFav && isFavoriteMissing()) badge = IconCache.Badge.FAVORITE_NOT_FOUND;
+
+        Image icon = icons.get(isFavMode ? "icon.png" : "icon_orange.png", badge);
+        if (icon != currentIcon) {
+            currentIcon = icon;
+            trayIcon.setImage(icon);
+        }
+    }
+
+    private static boolean isAllMuted() {
+        if (data.sessions().isEmpty()) return false;
+        for (AudioSnapshot.Session session : data.sessions())
+            if (!session.muted) return false;
+        return true;
+    }
 
     /**
-     * Loads an image from system resources
+     * Checks if any favorite device is not active anymore
      */
-    private static Image loadIcon(String filename) {
-        BufferedImage img = null;
-        try {
-            img = ImageIO.read(ClassLoader.getSystemResource(filename));
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-        assert img != null;
-        return img.getScaledInstance(Math.round(16 * Toolkit.getDefaultToolkit().getScreenResolution() / 96f), -1, Image.SCALE_SMOOTH);
+    private static boolean isFavoriteMissing() {
+        for (String app : favorites.apps())
+            for (String device : favorites.devices(app))
+                if (data.device(device) == null) return true;
+        return false;
     }
 
     /**
@@ -269,8 +401,6 @@ public class SoundMenu {
      * @param e unused
      */
     private static void switchEditMode(ActionEvent e) {
-        if (isEditMode) editFavoriteItem.setLabel("Edit");
-        else editFavoriteItem.setLabel("Cancel");
         isEditMode = !isEditMode;
 
         refreshAppsMenu();
@@ -283,12 +413,11 @@ public class SoundMenu {
      */
     private static void switchFavMode(ActionEvent e) {
         if (isFavMode) {
-            trayIcon.setImage(loadIcon("icon_orange.png"));
+            buildAppsMenu();
             trayIcon.setPopupMenu(mainPopup);
         }
         else {
             if (isEditMode) switchEditMode(null);
-            trayIcon.setImage(loadIcon("icon.png"));
             trayIcon.setPopupMenu(favPopup);
         }
         isFavMode = !isFavMode;
@@ -297,300 +426,323 @@ public class SoundMenu {
     }
 
     /**
-     * Processes data retrieved from <b>InputDecoder</b>
+     * Applies snapshot published by <b>RefreshPipeline</b>, runs on the event thread
+     * @param snapshot new snapshot
      */
-    private static void refreshData() {
-        processNames.clear();
-        processMuted.clear();
-        processIds.clear();
-        processPaths.clear();
-        processDevices.clear();
-        deviceNames.clear();
-        deviceIds.clear();
-        deviceSubNames.clear();
-
-        // Getting list of apps
-        for (String[] comb : getAppList()) {
-            String id = comb[2];
-            int index;
-            if ((index = processIds.indexOf(id)) != -1) {
-                processDevices.set(index, "undefined");
-            } else {
-                processNames.add(comb[0]);
-                processMuted.add(comb[1]);
-                processIds.add(id);
-                processPaths.add(comb[3]);
-                processDevices.add(comb[4].split("\\|")[0]);
-            }
-        }
+    private static void apply(AudioSnapshot snapshot) {
+        // Without any previous snapshot every process would look new
+        if (autoRoute && data != AudioSnapshot.EMPTY) autoRouter.route(data, snapshot);
 
-        // Getting list of devices
-        for (String[] comb : getDeviceList()) {
-            deviceNames.add(comb[0]);
-            deviceIds.add(comb[1]);
-            deviceSubNames.add(comb[2]);
-        }
+        data = snapshot;
+        refreshAppsMenu();
+        refreshFavorites();
     }
 
     /**
-     * Refills <b>appsMenu</b>
+     * Takes last snapshot published by <b>RefreshPipeline</b>
      */
-    private static void refreshAppsMenu() {
-        appsMenu.removeAll();
-
-        appsMenu.addSeparator();
-
-        for (int i = 0; i < processNames.size(); i++) {
-            final int pI = i;
-            Menu appMenu = new Menu(processNames.get(i) + (noInfo ? "" : " (" + processIds.get(i) + ")"));
-            Menu devicesMenu = new Menu("Output Device");
-            CheckboxMenuItem muteFlag = new CheckboxMenuItem("Mute", processMuted.get(i).equals("Yes"));
-
-            makePlain(muteFlag);
-
-            appMenu.addSeparator();
-            if (!simpleMenu) devicesMenu.addSeparator();
-
-            muteFlag.addItemListener(e -> muteApp(processIds.get(pI), e.getStateChange()));
-
-            for (int j = 0; j < deviceNames.size(); j++) {
-                final int dI = j;
-                MenuItem deviceItem = new MenuItem(deviceNames.get(j) + (noInfo ? "" : " (" + deviceSubNames.get(j) + ")"));
+    private static void refreshData() {
+        data = pipeline.current();
+    }
 
-                deviceItem.setEnabled(!(processDevices.get(i).equals(deviceIds.get(j))) || isEditMode);
+    /**
+     * Reloads right away, past anything the backend has cached. Used when the user asks for current state
+     */
+    private static void refreshNow() {
+        backend.invalidate();
+        refresher.trigger();
+    }
 
-                deviceItem.addActionListener(e -> {
-                    if (isEditMode) {
-                        boolean flag = true;
-                        for (int c = 1; c <= favorites.size() / 2; c++) {
-                            if (favorites.getProperty("app" + c).equals(processPaths.get(pI)) && favorites.getProperty("device" + c).equals(deviceIds.get(dI))) flag = false;
-                        }
-
-                        if (flag) {
-                            int index = favorites.size() / 2 + 1;
-                            favorites.setProperty("app" + index, processPaths.get(pI));
-                            favorites.setProperty("device" + index, deviceIds.get(dI));
-                        }
-
-                        refreshFavorites();
-                    } else
-                        switchDevice(processIds.get(pI), deviceIds.get(dI));
-                });
+    /**
+     * Marks <b>appsMenu</b> outdated. It's refilled only when it's about to be shown
+     */
+    private static void refreshAppsMenu() {
+        isAppsMenuDirty = true;
+    }
 
-                if (simpleMenu)
-                    appMenu.add(deviceItem);
-                else
-                    devicesMenu.add(deviceItem);
-            }
+    /**
+     * Refills <b>appsMenu</b> if it's outdated
+     */
+    private static void buildAppsMenu() {
+        if (!isAppsMenuDirty) return;
+        isAppsMenuDirty = false;
 
-            if (!simpleMenu) {
-                devicesMenu.addSeparator();
-                appMenu.add(devicesMenu);
-                appMenu.addSeparator();
-                appMenu.add(muteFlag);
-            }
-            appMenu.addSeparator();
-            appsMenu.add(appMenu);
-        }
-        appsMenu.addSeparator();
+        long start = Metrics.APPS_MENU.start();
+        reconciler.reconcile(appsMenu, menuBuilder.appsMenu(data, isEditMode));
+        Metrics.APPS_MENU.stop(start);
     }
 
     /**
-     * Refills <b>favoritesMenu</b> and <b>favPopup</b>
+     * Refills <b>favoritesMenu</b> and <b>favPopup</b> and updates the icon
      */
     private static void refreshFavorites() {
         if (!noFav) {
-            favoritesMenu.removeAll();
-            favPopup.removeAll();
-
-            List<String> addedMenus = new ArrayList<>();
-            List<Object> keys = Collections.list(favorites.keys());
-            List<Object> values = Collections.list(favorites.elements());
-
-            for (int i = 1; i <= favorites.size() / 2; i++) {
-                Menu favoriteAppMenu;
-                MenuItem favoriteDeviceItem = new MenuItem();
-                String appPath = (String) values.get(keys.indexOf("app" + i));
-                String appDevice = (String) values.get(keys.indexOf("device" + i));
-
-                // Adding Favorite App Menu
-                int appIndex = processPaths.indexOf(appPath);
-                if (addedMenus.contains(appPath)) {
-                    favoriteAppMenu = (Menu) favoritesMenu.getItem(addedMenus.indexOf(appPath));
-                } else {
-                    favoriteAppMenu = new Menu();
-
-                    if (appIndex == -1) {
-                        String[] filePath = appPath.split("\\\\");
-                        favoriteAppMenu.setLabel(filePath[filePath.length - 1]);
-                        favoriteAppMenu.setEnabled(isEditMode);
-                    } else
-                        favoriteAppMenu.setLabel(processNames.get(appIndex));
-                    favoriteAppMenu.setName(appPath);
-                    addedMenus.add(appPath);
-                    if (favoritesMenu.getItemCount() > 0) favoritesMenu.addSeparator();
-                    favoritesMenu.add(favoriteAppMenu);
-                }
+            long start = Metrics.FAVORITES.start();
+            List<MenuNode> appNodes = menuBuilder.favoriteApps(data, favorites, isEditMode);
 
-                // Adding Device Menu Item
-                int deviceIndex = deviceIds.indexOf(appDevice);
-
-                if (deviceIndex == -1) {
-                    favoriteDeviceItem.setLabel("Device not found");
-                    favoriteDeviceItem.setEnabled(false);
-                } else {
-                    favoriteDeviceItem.setLabel(deviceNames.get(deviceIndex) + (noInfo ? "" : " (" + deviceSubNames.get(deviceIndex) + ")"));
-                    final int index = i;
-                    favoriteDeviceItem.addActionListener(e -> {
-                        if (isEditMode) {
-                            removeFavProperty(index);
-
-                            refreshFavorites();
-                        } else
-                            switchDevice(processIds.get(appIndex), deviceIds.get(deviceIndex));
-                    });
-                }
-
-                if (favoriteAppMenu.getItemCount() > 0) favoriteAppMenu.addSeparator();
-                favoriteAppMenu.add(favoriteDeviceItem);
+            // App menus can only have one parent, so the hidden menu is emptied first
+            if (isFavMode) {
+                reconciler.reconcile(favoritesMenu, Collections.emptyList());
+                reconciler.reconcile(favPopup, menuBuilder.favPopup(appNodes));
+            } else {
+                reconciler.reconcile(favPopup, Collections.emptyList());
+                reconciler.reconcile(favoritesMenu, menuBuilder.favoritesMenu(appNodes, isEditMode));
             }
+            Metrics.FAVORITES.stop(start);
+        }
 
-            for (int i = 0; i < favoritesMenu.getItemCount(); i++) {
-                Menu curFavMenu = (Menu) favoritesMenu.getItem(i);
-
-                if (isEditMode) {
-                    MenuItem deleteFavoriteAppItem = new MenuItem("Delete All");
-
-                    makePlain(deleteFavoriteAppItem);
-
-                    curFavMenu.addSeparator();
-                    curFavMenu.add(deleteFavoriteAppItem);
-
-                    deleteFavoriteAppItem.addActionListener(e -> {
-                        String appPath = curFavMenu.getName();
-
-                        for (int index = 1; index <= favorites.size() / 2; index++) {
-                            if (favorites.getProperty("app" + index).equals(appPath)) {
-                                removeFavProperty(index);
-                                index--;
-                            }
-                        }
+        updateIcon();
+    }
 
-                        refreshFavorites();
-                    });
-                }
+    /**
+     * Changes current playback device for the app with provided <b>processID</b>
+     * @param processID system ID of the process
+     * @param deviceID  ID of the sound output device
+     */
+    private static void switchDevice(String processID, String deviceID) {
+        commandQueue.submit("device:" + processID, () -> timed(Metrics.SWITCH_DEVICE, () -> backend.setAppDefault(deviceID, processID)));
+    }
 
-                curFavMenu.insertSeparator(0);
-                curFavMenu.addSeparator();
-            }
+    /**
+     * Mutes and unmutes the app with provided <b>processID</b>
+     * @param processID system ID of the process
+     * @param state     1 - Mute, 2 - Unmute
+     */
+    private static void muteApp(String processID, int state) {
+        boolean mute = state == ItemEvent.SELECTED;
+        commandQueue.submit("mute:" + processID, () -> timed(Metrics.MUTE_APP, () -> backend.setMute(processID, mute)));
+    }
 
-            if (isFavMode) {
-                // Refilling Favorites Popup
-                favPopup.addSeparator();
+    /**
+     * Changes volume of the app with provided <b>processID</b>. Rapid changes are collapsed to the last one
+     * @param processID system ID of the process
+     * @param percent   volume from 0 to 100
+     */
+    private static void setAppVolume(String processID, int percent) {
+        commandQueue.debounce("volume:" + processID, VOLUME_DEBOUNCE, () -> backend.setAppVolume(processID, percent));
+    }
 
-                for (int i = 0; i < favoritesMenu.getItemCount(); i++) {
-                    favPopup.add(favoritesMenu.getItem(i));
-                }
+    /**
+     * Changes master volume of the device with provided <b>deviceID</b>. Rapid changes are collapsed to the last one
+     * @param deviceID ID of the sound output device
+     * @param percent  volume from 0 to 100
+     */
+    private static void setDeviceVolume(String deviceID, int percent) {
+        commandQueue.debounce("master:" + deviceID, VOLUME_DEBOUNCE, () -> backend.setDeviceVolume(deviceID, percent));
+    }
 
-                if (favPopup.getItemCount() == 1) {
-                    MenuItem emptyItem = new MenuItem("Switch mode");
+    /**
+     * Switches every process of the app with provided <b>processPath</b> as one batch
+     * @param processPath path of the executable
+     * @param deviceID    ID of the sound output device
+     */
+    private static void switchGroup(String processPath, String deviceID) {
+        commandQueue.submit("device:" + processPath, () -> timed(Metrics.SWITCH_DEVICE,
+            () -> report(profileBatch.switchApp(processPath, deviceID, pipeline.current()))));
+    }
 
-                    emptyItem.addActionListener(SoundMenu::switchFavMode);
+    /**
+     * Mutes and unmutes every process of the app with provided <b>processPath</b> as one batch
+     * @param processPath path of the executable
+     * @param state       1 - Mute, 2 - Unmute
+     */
+    private static void muteGroup(String processPath, int state) {
+        boolean mute = state == ItemEvent.SELECTED;
+        commandQueue.submit("mute:" + processPath, () -> timed(Metrics.MUTE_APP,
+            () -> report(profileBatch.muteApp(processPath, mute, pipeline.current()))));
+    }
 
-                    favPopup.add(emptyItem);
-                }
+    /**
+     * Changes volume of every process of the app with provided <b>processPath</b> as one batch.
+     * Rapid changes are collapsed to the last one
+     * @param processPath path of the executable
+     * @param percent     volume from 0 to 100
+     */
+    private static void setGroupVolume(String processPath, int percent) {
+        commandQueue.debounce("volume:" + processPath, VOLUME_DEBOUNCE,
+            () -> report(profileBatch.setAppVolume(processPath, percent, pipeline.current())));
+    }
 
-                favPopup.addSeparator();
-            } else {
-                // Adding Edit and Remove All Menu Items
-                if (favoritesMenu.getItemCount() > 1) favoritesMenu.addSeparator();
-                favoritesMenu.add(editFavoriteItem);
-                favoritesMenu.add(clearFavoriteItem);
-            }
+    /**
+     * Prints <b>report</b> of a group batch if some of it's processes failed
+     * @throws IOException thrown if none of the processes succeeded
+     */
+    private static void report(ProfileBatch.Report report) throws IOException {
+        if (report.succeeded() == report.results.size()) return;
+        System.out.println(report);
+        if (report.succeeded() == 0) throw new IOException("Every process of " + report.name + " failed");
+    }
 
-            favoritesMenu.insertSeparator(0);
-            favoritesMenu.addSeparator();
+    /**
+     * Runs <b>command</b> recording it's latency in <b>histogram</b>
+     * @param histogram histogram
+     * @param command   command
+     * @throws IOException thrown if command failed
+     */
+    private static void timed(Metrics.Histogram histogram, CommandQueue.Command command) throws IOException {
+        long start = histogram.start();
+        try {
+            command.run();
+            histogram.stop(start);
+        } catch (IOException e) {
+            histogram.fail(start);
+            throw e;
         }
     }
 
     /**
-     * Removes element from favorites by it's index
-     * @param index index
+     * Routes every app of the profile with provided <b>name</b> as one batch and reports the result
+     * @param name name of the profile
      */
-    private static void removeFavProperty(int index) {
-        for (int j = index; j < favorites.size() / 2; j++) {
-            favorites.setProperty("app" + j, favorites.getProperty("app" + (j + 1)));
-            favorites.setProperty("device" + j, favorites.getProperty("device" + (j + 1)));
+    private static void applyProfile(String name) {
+        Map<String, String> rules = profiles.rules(name);
+        if (rules.isEmpty()) {
+            System.out.println("Unknown profile: " + name);
+            return;
         }
 
-        int n = favorites.size() / 2;
+        commandQueue.submit("profile", () -> {
+            ProfileBatch.Report report = profileBatch.apply(name, rules, pipeline.current());
+            System.out.println(report);
 
-        favorites.remove("app" + n);
-        favorites.remove("device" + n);
+            String summary = String.format("%d of %d applied in %d ms", report.succeeded(), report.results.size(), report.nanos / 1000000);
+            EventQueue.invokeLater(() -> trayIcon.displayMessage("Profile " + name, summary,
+                report.succeeded() == report.results.size() ? TrayIcon.MessageType.INFO : TrayIcon.MessageType.WARNING));
+        });
     }
 
     /**
-     * Filtering <b>InputDecoder</b> to get only applications
-     * @return list of application's properties
+     * Runs command received by <b>ControlServer</b> on the event thread, the same way menu clicks are run
+     * @param command command name followed by it's arguments
+     * @return result lines
+     * @throws Exception thrown if command is invalid
      */
-    private static List<String[]> getAppList() {
-        List<String[]> ret = new ArrayList<>();
+    private static String control(List<String> command) throws Exception {
+        FutureTask<String> task = new FutureTask<>(() -> runControl(command));
+        EventQueue.invokeLater(task);
+        try {
+            return task.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception) throw (Exception) e.getCause();
+            throw e;
+        }
+    }
 
-        for (int i = 0; i < inputDecoder.size(); i++) {
-            String[] row = inputDecoder.getRow(i);
-            if (row[iDirection].equals("Render") && row[iType].equals("Application") && !row[iProcessID].equals("")) {
-                ret.add(new String[]{row[iName], row[iMuted], row[iProcessID], row[iProcessPath], row[iItemID]});
+    private static String runControl(List<String> command) {
+        String name = command.get(0).toLowerCase();
+        switch (name) {
+            case "switch": {
+                arguments(command, 3, 3);
+                AudioSnapshot.Session session = controlledApp(command.get(1));
+                if (data.device(command.get(2)) == null) throw new IllegalArgumentException("Unknown device: " + command.get(2));
+                if (isPath(command.get(1))) switchGroup(session.processPath, command.get(2));
+                else switchDevice(session.processId, command.get(2));
+                return "";
             }
+            case "mute": {
+                arguments(command, 2, 3);
+                AudioSnapshot.Session session = controlledApp(command.get(1));
+                boolean muted = isPath(command.get(1)) ? isGroupMuted(session.processPath) : session.muted;
+                boolean mute = command.size() == 2 ? !muted : command.get(2).equalsIgnoreCase("on");
+                if (command.size() == 3 && !mute && !command.get(2).equalsIgnoreCase("off"))
+                    throw new IllegalArgumentException("Expected on or off: " + command.get(2));
+                int state = mute ? ItemEvent.SELECTED : ItemEvent.DESELECTED;
+                if (isPath(command.get(1))) muteGroup(session.processPath, state);
+                else muteApp(session.processId, state);
+                return "";
+            }
+            case "volume": {
+                arguments(command, 3, 3);
+                AudioSnapshot.Session session = controlledApp(command.get(1));
+                if (isPath(command.get(1))) setGroupVolume(session.processPath, percent(command.get(2)));
+                else setAppVolume(session.processId, percent(command.get(2)));
+                return "";
+            }
+            case "master":
+                arguments(command, 3, 3);
+                if (data.device(command.get(1)) == null) throw new IllegalArgumentException("Unknown device: " + command.get(1));
+                setDeviceVolume(command.get(1), percent(command.get(2)));
+                return "";
+            case "favorite": {
+                arguments(command, 2, 3);
+                AudioSnapshot.Session session = controlledApp(command.get(1));
+                List<String> devices = new ArrayList<>(favorites.devices(session.processPath));
+                int index;
+                try {
+                    index = command.size() == 3 ? Integer.parseInt(command.get(2)) : 1;
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Invalid favorite number: " + command.get(2));
+                }
+                if (index < 1 || index > devices.size()) throw new IllegalArgumentException("No favorite device " + index + " for " + session.processPath);
+                if (isPath(command.get(1))) switchGroup(session.processPath, devices.get(index - 1));
+                else switchDevice(session.processId, devices.get(index - 1));
+                return "";
+            }
+            case "profile":
+                arguments(command, 2, 2);
+                if (profiles.rules(command.get(1)).isEmpty()) throw new IllegalArgumentException("Unknown profile: " + command.get(1));
+                applyProfile(command.get(1));
+                return "";
+            case "refresh":
+                refreshNow();
+                return "";
+            case "dump": {
+                StringJoiner dump = new StringJoiner("\n");
+                for (AudioSnapshot.Device device : data.devices())
+                    dump.add("DEVICE\t" + device.itemId + "\t" + device.name + "\t" + device.subName + "\t" + device.volume);
+                for (AudioSnapshot.Session session : data.sessions())
+                    dump.add("APP\t" + session.processId + "\t" + session.name + "\t" + session.processPath + "\t" + session.deviceId +
+                        "\t" + (session.muted ? "muted" : "unmuted") + "\t" + session.volume + (session.stale ? "\tstale" : ""));
+                return dump.toString();
+            }
+            case "stats":
+                return Metrics.summary();
+            default:
+                throw new IllegalArgumentException("Unknown command: " + name);
         }
+    }
 
-        return ret;
+    private static void arguments(List<String> command, int min, int max) {
+        if (command.size() < min || command.size() > max)
+            throw new IllegalArgumentException("Wrong amount of arguments for " + command.get(0));
     }
 
     /**
-     * Filtering <b>InputDecoder</b> to get only devices
-     * @return list of device's properties
+     * Searches for the running app with provided process ID or path
      */
-    private static List<String[]> getDeviceList() {
-        List<String[]> ret = new ArrayList<>();
-
-        for (int i = 0; i < inputDecoder.size(); i++) {
-            String[] row = inputDecoder.getRow(i);
-            if (row[iDirection].equals("Render") && row[iType].equals("Device") && row[iDeviceState].equals("Active")) {
-                ret.add(new String[]{row[iName], row[iItemID], row[iDeviceName]});
-            }
-        }
-
-        return ret;
+    private static AudioSnapshot.Session controlledApp(String app) {
+        AudioSnapshot.Session session = data.session(app);
+        if (session == null) session = data.sessionOf(app);
+        if (session == null || session.stale) throw new IllegalArgumentException("Unknown app: " + app);
+        return session;
     }
 
     /**
-     * Changes current playback device for the app with provided <b>processID</b>
-     * @param processID system ID of the process
-     * @param deviceID  ID of the sound output device
+     * Checks if <b>app</b> names every process of an executable rather than one process ID
      */
-    private static void switchDevice(String processID, String deviceID) {
-        try {
-            Runtime.getRuntime().exec("SoundVolumeView.exe /SetAppDefault " + deviceID + " all " + processID);
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-
-        refreshData();
-        refreshAppsMenu();
-        refreshFavorites();
+    private static boolean isPath(String app) {
+        return data.session(app) == null;
     }
 
     /**
-     * Mutes and unmutes the app with provided <b>processID</b>
-     * @param processID system ID of the process
-     * @param state     1 - Mute, 2 - Unmute
+     * Checks if every running process of the executable is muted, as it's grouped menu entry shows it
      */
-    private static void muteApp(String processID, int state) {
-        try {
-            Runtime.getRuntime().exec("SoundVolumeView.exe /" + (state == ItemEvent.SELECTED ? "M" : "Unm") + "ute " + processID);
-        } catch (IOException e) {
-            e.printStackTrace();
+    private static boolean isGroupMuted(String processPath) {
+        boolean muted = false;
+        for (AudioSnapshot.Session session : data.sessions()) {
+            if (session.stale || !session.processPath.equals(processPath)) continue;
+            if (!session.muted) return false;
+            muted = true;
         }
+        return muted;
+    }
+
+    private static int percent(String value) {
+        try {
+            int percent = Integer.parseInt(value);
+            if (percent >= 0 && percent <= 100) return percent;
+        } catch (NumberFormatException ignored) {}
+        throw new IllegalArgumentException("Expected volume from 0 to 100: " + value);
     }
 
     /**
@@ -599,32 +751,111 @@ public class SoundMenu {
      */
     private static void openApp(boolean settings) {
         try {
-            if (settings)
-                Runtime.getRuntime().exec("cmd /c start ms-settings:apps-volume");
-            else
-                Runtime.getRuntime().exec("SoundVolumeView.exe");
+            backend.openSettings(settings);
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
 
     /**
-     * Additional thread to refresh Apps list every 30 seconds
+     * Shared listener of every menu described by <b>MenuBuilder</b>
      */
-    private static class Refresher extends Thread {
-        public boolean doRun = true;
+    private static class MenuDispatcher implements ActionListener, ItemListener {
+        @Override
+        public void actionPerformed(ActionEvent e) {
+            dispatch((MenuItem) e.getSource(), ItemEvent.DESELECTED);
+        }
 
         @Override
-        public void run() {
-            super.run();
-            try {
-                Thread.sleep(30000);
-                inputDecoder.reload();
-                refreshData();
-                refreshAppsMenu();
-                refreshFavorites();
-                if (doRun) run();
-            } catch (InterruptedException ignored) { }
+        public void itemStateChanged(ItemEvent e) {
+            dispatch((MenuItem) e.getSource(), e.getStateChange());
+        }
+
+        /**
+         * Performs action of the clicked <b>item</b>
+         * @param item  clicked item
+         * @param state state of the checkbox
+         */
+        private void dispatch(MenuItem item, int state) {
+            String command = item.getActionCommand();
+            int split = command.indexOf('\t');
+            String action = split == -1 ? command : command.substring(0, split);
+            String argument = split == -1 ? null : command.substring(split + 1);
+            String owner = owner(item, MenuBuilder.APP_KEY);
+            String group = owner(item, MenuBuilder.GROUP_KEY);
+
+            switch (action) {
+                case MenuBuilder.DEVICE: {
+                    if (group != null) {
+                        if (isEditMode) {
+                            if (favorites.add(group, argument)) refreshFavorites();
+                        } else
+                            switchGroup(group, argument);
+                        break;
+                    }
+
+                    AudioSnapshot.Session session = data.session(owner);
+                    if (session == null) break;
+
+                    if (isEditMode) {
+                        if (favorites.add(session.processPath, argument)) refreshFavorites();
+                    } else
+                        switchDevice(session.processId, argument);
+                    break;
+                }
+                case MenuBuilder.MUTE:
+                    if (group != null) muteGroup(group, state);
+                    else if (owner != null) muteApp(owner, state);
+                    break;
+                case MenuBuilder.VOLUME:
+                    if (group != null) setGroupVolume(group, Integer.parseInt(argument));
+                    else if (owner != null) setAppVolume(owner, Integer.parseInt(argument));
+                    break;
+                case MenuBuilder.MASTER: {
+                    String device = owner(item, MenuBuilder.DEVICE_KEY);
+                    if (device != null) setDeviceVolume(device, Integer.parseInt(argument));
+                    break;
+                }
+                case MenuBuilder.FAVORITE:
+                    if (isEditMode) {
+                        if (favorites.remove(owner, argument)) refreshFavorites();
+                    } else {
+                        AudioSnapshot.Session session = data.sessionOf(owner);
+                        if (session != null && !session.stale) switchDevice(session.processId, argument);
+                    }
+                    break;
+                case MenuBuilder.DELETE:
+                    favorites.removeApp(owner);
+                    refreshFavorites();
+                    break;
+                case MenuBuilder.CLEAR:
+                    favorites.clear();
+                    refreshFavorites();
+                    break;
+                case MenuBuilder.EDIT:
+                    switchEditMode(null);
+                    break;
+                case MenuBuilder.SWITCH:
+                    switchFavMode(null);
+                    break;
+                case MenuBuilder.PROFILE:
+                    applyProfile(argument);
+                    break;
+            }
+        }
+
+        /**
+         * Searches for the app or device menu the <b>item</b> belongs to
+         * @param item   menu item
+         * @param prefix key prefix of the menu, <b>APP_KEY</b> or <b>DEVICE_KEY</b>
+         * @return process ID, path or device ID the menu was keyed with
+         */
+        private static String owner(MenuItem item, String prefix) {
+            for (MenuContainer parent = item.getParent(); parent instanceof Menu; parent = ((Menu) parent).getParent()) {
+                String name = ((Menu) parent).getName();
+                if (name.startsWith(prefix)) return name.substring(prefix.length());
+            }
+            return null;
         }
     }
 
@@ -634,11 +865,14 @@ public class SoundMenu {
     private static class Shutdowner extends Thread implements ActionListener {
         @Override
         public void run() {
-            refresher.doRun = false;
-            refresher.interrupt();
+            if (refresher != null) refresher.shutdown();
+            commandQueue.shutdown();
+            backend.close();
+            if (controlServer != null) controlServer.close();
+            if (pipeline != null && !inputDecoder.isFailed()) snapshotCache.save(pipeline.current());
             if (saveFav)
             try {
-                favorites.store(new FileOutputStream("config.properties"), null);
+                favorites.store(new FileOutputStream("config.properties"));
             } catch (IOException fileNotFoundException) {
                 fileNotFoundException.printStackTrace();
             }
@@ -0,0 +1,88 @@
+package org.urobbyu;
+
+import java.io.IOException;
+
+/**
+ * <b>AudioBackend</b> driving <b>SoundVolumeView.exe</b>.
+ * <p>
+ * Every call goes through <b>ProcessSupervisor</b>. Executable, deadline in milliseconds and limit of concurrent calls
+ * are taken from <b>soundmenu.svv</b>, <b>soundmenu.svv.timeout</b> (10000) and <b>soundmenu.svv.concurrency</b> (4)
+ */
+public class SoundVolumeViewBackend implements AudioBackend {
+    private final String executable;
+    private final long timeout;
+    private final ProcessSupervisor supervisor;
+    private final StabReader reader = new StabReader();
+
+    SoundVolumeViewBackend() {
+        this(
+            System.getProperty("soundmenu.svv", "SoundVolumeView.exe"),
+            Long.getLong("soundmenu.svv.timeout", 10_000L),
+            new ProcessSupervisor(Integer.getInteger("soundmenu.svv.concurrency", 4), 3)
+        );
+    }
+
+    /**
+     * @param executable path of the tool
+     * @param timeout    deadline of every call in milliseconds
+     * @param supervisor runner of the tool
+     */
+    SoundVolumeViewBackend(String executable, long timeout, ProcessSupervisor supervisor) {
+        this.executable = executable;
+        this.timeout = timeout;
+        this.supervisor = supervisor;
+    }
+
+    @Override
+    public synchronized void snapshot(InputDecoder.RowVisitor visitor) throws IOException {
+        // Spawn is timed until the output can be read, parsing until it's decoded. Waiting for the tool to exit is neither.
+        // Output skipped by fingerprint isn't a parse, it's counted as a skipped cycle instead
+        long start = Metrics.SPAWN.start();
+        boolean[] isSpawned = { false };
+        try {
+            // Asking only for consumed columns, in the order StabSchema expects them
+            supervisor.run(timeout, in -> {
+                Metrics.SPAWN.stop(start);
+                isSpawned[0] = true;
+                long parseStart = Metrics.PARSE.start();
+                try {
+                    if (reader.read(in, visitor)) Metrics.PARSE.stop(parseStart);
+                } catch (IOException | RuntimeException e) {
+                    Metrics.PARSE.fail(parseStart);
+                    throw e;
+                }
+            }, executable, "/stab", "", "/Columns", String.join(",", StabSchema.COLUMNS));
+        } catch (IOException e) {
+            if (!isSpawned[0]) Metrics.SPAWN.fail(start);
+            throw e;
+        }
+    }
+
+    @Override
+    public void setAppDefault(String deviceID, String processID) throws IOException {
+        supervisor.run(timeout, executable, "/SetAppDefault", deviceID, "all", processID);
+    }
+
+    @Override
+    public void setMute(String processID, boolean mute) throws IOException {
+        supervisor.run(timeout, executable, mute ? "/Mute" : "/Unmute", processID);
+    }
+
+    @Override
+    public void setAppVolume(String processID, int percent) throws IOException {
+        supervisor.run(timeout, executable, "/SetVolume", processID, String.valueOf(percent));
+    }
+
+    @Override
+    public void setDeviceVolume(String deviceID, int percent) throws IOException {
+        supervisor.run(timeout, executable, "/SetVolume", deviceID, String.valueOf(percent));
+    }
+
+    @Override
+    public void openSettings(boolean settings) throws IOException {
+        if (settings)
+            supervisor.launch("cmd", "/c", "start", "ms-settings:apps-volume");
+        else
+            supervisor.launch(executable);
+    }
+}
@@ -0,0 +1,185 @@
+package org.urobbyu;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static org.urobbyu.StabSchema.*;
+
+/**
+ * Decoder of <b>SoundVolumeView /stab</b> output working on raw UTF-16LE bytes.
+ * <p>
+ * Output is read into a buffer that is kept between reads, tabs and line breaks are found on code units.
+ * Enum-like cells are decoded in place, and strings of rows passed to the visitor are taken from a symbol
+ * table kept between reads, so repeated values are only created once. Not thread safe
+ */
+public class StabReader {
+    private static final int INITIAL_CAPACITY = 64 * 1024;
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+    private static final int SYMBOLS = 4096;
+    private static final Direction[] DIRECTIONS = Direction.values();
+    private static final Type[] TYPES = Type.values();
+    private static final DeviceState[] DEVICE_STATES = DeviceState.values();
+
+    private ByteBuffer buffer = ByteBuffer.allocate(INITIAL_CAPACITY);
+    private long fingerprint;
+    private StabSchema schema = null;
+    private final SymbolTable symbols = new SymbolTable(SYMBOLS);
+    // Byte offsets of projected cells of the current row, -1 if column is missing
+    private final int[] starts = new int[SLOTS];
+    private final int[] ends = new int[SLOTS];
+
+    /**
+     * Reads <b>in</b> until it's end and pushes every application and device row to the <b>visitor</b>.
+     * Rows are skipped if the <b>visitor</b> recognizes fingerprint of the raw output
+     * @param in      UTF-16LE encoded table
+     * @param visitor row consumer
+     * @return T - rows were decoded, F - they were skipped
+     * @throws IOException thrown if stream can't be read, or it has no header with every required column
+     */
+    public boolean read(InputStream in, InputDecoder.RowVisitor visitor) throws IOException {
+        int length = fill(in);
+        if (!visitor.fingerprint(fingerprint)) return false;
+        byte[] bytes = buffer.array();
+
+        int position = 0;
+        // Skipping byte order mark
+        if (length >= 2 && bytes[0] == (byte) 0xFF && bytes[1] == (byte) 0xFE) position = 2;
+
+        // Header is only resolved again when the tool starts printing a different one.
+        // Table without it can't be told from no sessions at all, so it fails instead of wiping the menu
+        int headerEnd = lineEnd(bytes, position, length);
+        if (headerEnd == position) throw new IOException("SoundVolumeView printed no table");
+        if (schema == null || !schema.matches(bytes, position, headerEnd)) {
+            StabSchema resolved = StabSchema.resolve(bytes, position, headerEnd);
+            if (!resolved.isComplete()) throw new IOException("SoundVolumeView header is missing some of the columns: " + COLUMNS);
+            schema = resolved;
+        }
+
+        int rows = 0;
+        position = next(bytes, headerEnd, length);
+        while (position < length) {
+            int end = lineEnd(bytes, position, length);
+            if (end > position) {
+                project(bytes, position, end, schema);
+                emit(bytes, visitor);
+                rows++;
+            }
+            position = next(bytes, end, length);
+        }
+        symbols.sweep();
+        Metrics.rowsParsed(rows);
+        return true;
+    }
+
+    /**
+     * Reads whole stream into the buffer, growing it if needed, and hashes it on the way (FNV-1a)
+     * @return amount of bytes read, always even
+     */
+    private int fill(InputStream in) throws IOException {
+        buffer.clear();
+        long hash = FNV_OFFSET;
+        int read;
+        while ((read = in.read(buffer.array(), buffer.position(), buffer.remaining())) != -1) {
+            byte[] bytes = buffer.array();
+            for (int i = buffer.position(), end = i + read; i < end; i++) hash = (hash ^ (bytes[i] & 0xFF)) * FNV_PRIME;
+            buffer.position(buffer.position() + read);
+            if (!buffer.hasRemaining()) {
+                ByteBuffer grown = ByteBuffer.allocate(buffer.capacity() * 2);
+                buffer.flip();
+                grown.put(buffer);
+                buffer = grown;
+            }
+        }
+        fingerprint = hash;
+        return buffer.position() & ~1;
+    }
+
+    /**
+     * Records bounds of projected cells of one row, skipping unused columns
+     */
+    private void project(byte[] bytes, int start, int end, StabSchema schema) {
+        Arrays.fill(starts, -1);
+        Arrays.fill(ends, -1);
+
+        int column = 0;
+        int cellStart = start;
+        int lastColumn = schema.lastColumn();
+        for (int i = start; i <= end && column <= lastColumn; i += 2) {
+            if (i == end || (bytes[i] == '\t' && bytes[i + 1] == 0)) {
+                int slot = schema.slotOf(column);
+                if (slot != -1) {
+                    starts[slot] = cellStart;
+                    ends[slot] = i;
+                }
+                column++;
+                cellStart = i + 2;
+            }
+        }
+    }
+
+    private void emit(byte[] bytes, InputDecoder.RowVisitor visitor) {
+        if (decode(bytes, DIRECTION, DIRECTIONS) != Direction.RENDER) return;
+
+        switch (decode(bytes, TYPE, TYPES)) {
+            case APPLICATION:
+                if (starts[PROCESS_ID] != -1 && ends[PROCESS_ID] > starts[PROCESS_ID])
+                    visitor.app(cell(bytes, NAME), is(bytes, MUTED, "Yes"), cell(bytes, PROCESS_ID), cell(bytes, PROCESS_PATH), cell(bytes, ITEM_ID), cell(bytes, VOLUME));
+                break;
+            case DEVICE:
+                if (decode(bytes, DEVICE_STATE, DEVICE_STATES) == DeviceState.ACTIVE)
+                    visitor.device(cell(bytes, NAME), cell(bytes, ITEM_ID), cell(bytes, DEVICE_NAME), cell(bytes, VOLUME));
+                break;
+        }
+    }
+
+    /**
+     * Decodes enum-like cell without creating a string
+     * @param values values of the enum, the last one is used for unknown cells
+     */
+    private <E extends Enum<E> & Label> E decode(byte[] bytes, int slot, E[] values) {
+        for (int i = 0; i < values.length - 1; i++) {
+            if (is(bytes, slot, values[i].label())) return values[i];
+        }
+        return values[values.length - 1];
+    }
+
+    /**
+     * Compares cell with ASCII <b>value</b> without decoding it
+     */
+    private boolean is(byte[] bytes, int slot, String value) {
+        int start = starts[slot];
+        if (start == -1 || ends[slot] - start != value.length() * 2) return false;
+        for (int i = 0; i < value.length(); i++) {
+            if (bytes[start + i * 2] != value.charAt(i) || bytes[start + i * 2 + 1] != 0) return false;
+        }
+        return true;
+    }
+
+    private String cell(byte[] bytes, int slot) {
+        int start = starts[slot];
+        if (start == -1) return "";
+        return symbols.intern(bytes, start, ends[slot]);
+    }
+
+    /**
+     * Searches for the end of the line starting at <b>start</b>, excluding CR
+     */
+    private static int lineEnd(byte[] bytes, int start, int length) {
+        int i = start;
+        while (i < length && !(bytes[i] == '\n' && bytes[i + 1] == 0)) i += 2;
+        if (i > start && bytes[i - 2] == '\r' && bytes[i - 1] == 0) i -= 2;
+        return i;
+    }
+
+    /**
+     * Skips line break following <b>end</b>
+     */
+    private static int next(byte[] bytes, int end, int length) {
+        if (end < length && bytes[end] == '\r' && bytes[end + 1] == 0) end += 2;
+        if (end < length && bytes[end] == '\n' && bytes[end + 1] == 0) end += 2;
+        return end;
+    }
+}
@@ -0,0 +1,181 @@
+package org.urobbyu;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable mapping of <b>/stab</b> columns to the cells <b>StabReader</b> consumes, resolved from one header.
+ * Header is kept as raw bytes, so the next output can be checked against it without decoding
+ */
+public final class StabSchema {
+    // Slots of projected cells
+    static final int NAME = 0;
+    static final int MUTED = 1;
+    static final int PROCESS_ID = 2;
+    static final int PROCESS_PATH = 3;
+    static final int ITEM_ID = 4;
+    static final int DIRECTION = 5;
+    static final int TYPE = 6;
+    static final int DEVICE_NAME = 7;
+    static final int DEVICE_STATE = 8;
+    static final int VOLUME = 9;
+    static final int SLOTS = 10;
+
+    /** Consumed columns in slot order, the order they are requested from <b>SoundVolumeView</b> in */
+    public static final List<String> COLUMNS = Collections.unmodifiableList(Arrays.asList(
+        "Name", "Muted", "Process ID", "Process Path", "Item ID", "Direction", "Type", "Device Name", "Device State",
+        "Volume Percent"
+    ));
+
+    /**
+     * Values of the <b>Direction</b> column
+     */
+    enum Direction implements Label {
+        RENDER("Render"), CAPTURE("Capture"), OTHER(null);
+
+        private final String label;
+
+        Direction(String label) {
+            this.label = label;
+        }
+
+        @Override
+        public String label() {
+            return label;
+        }
+    }
+
+    /**
+     * Values of the <b>Type</b> column
+     */
+    enum Type implements Label {
+        APPLICATION("Application"), DEVICE("Device"), SUBUNIT("Subunit"), OTHER(null);
+
+        private final String label;
+
+        Type(String label) {
+            this.label = label;
+        }
+
+        @Override
+        public String label() {
+            return label;
+        }
+    }
+
+    /**
+     * Values of the <b>Device State</b> column
+     */
+    enum DeviceState implements Label {
+        ACTIVE("Active"), DISABLED("Disabled"), UNPLUGGED("Unplugged"), NOT_PRESENT("Not Present"), OTHER(null);
+
+        private final String label;
+
+        DeviceState(String label) {
+            this.label = label;
+        }
+
+        @Override
+        public String label() {
+            return label;
+        }
+    }
+
+    /**
+     * Enum-like column value, <b>null</b> label marks the value of unknown cells
+     */
+    interface Label {
+        String label();
+    }
+
+    private final byte[] header;
+    private final int[] slotOf;
+    private final int lastColumn;
+    private final boolean isComplete;
+
+    private StabSchema(byte[] header, int[] slotOf) {
+        this.header = header;
+        this.slotOf = slotOf;
+
+        int lastColumn = -1;
+        int resolved = 0;
+        for (int column = 0; column < slotOf.length; column++) {
+            if (slotOf[column] == -1) continue;
+            lastColumn = column;
+            resolved++;
+        }
+        this.lastColumn = lastColumn;
+        this.isComplete = resolved == SLOTS;
+    }
+
+    /**
+     * Resolves columns of the header by their names. Header of exactly the requested columns with unknown
+     * names, e.g. localized one, is mapped by position
+     * @param bytes UTF-16LE encoded output
+     * @param start first byte of the header
+     * @param end   end of the header, excluding line break
+     * @return schema
+     */
+    public static StabSchema resolve(byte[] bytes, int start, int end) {
+        String[] propNames = new String(bytes, start, end - start, StandardCharsets.UTF_16LE).split("\t", -1);
+        int[] slotOf = new int[propNames.length];
+        Arrays.fill(slotOf, -1);
+
+        int resolved = 0;
+        for (int column = 0; column < propNames.length; column++) {
+            int slot = COLUMNS.indexOf(propNames[column]);
+            if (slot != -1 && !contains(slotOf, slot)) {
+                slotOf[column] = slot;
+                resolved++;
+            }
+        }
+
+        if (resolved < SLOTS && propNames.length == SLOTS)
+            for (int column = 0; column < SLOTS; column++) slotOf[column] = column;
+
+        return new StabSchema(Arrays.copyOfRange(bytes, start, end), slotOf);
+    }
+
+    private static boolean contains(int[] slotOf, int slot) {
+        for (int s : slotOf) if (s == slot) return true;
+        return false;
+    }
+
+    /**
+     * Checks if the header in <b>bytes</b> is the one this schema was resolved from
+     * @param bytes UTF-16LE encoded output
+     * @param start first byte of the header
+     * @param end   end of the header, excluding line break
+     * @return T - same header
+     */
+    public boolean matches(byte[] bytes, int start, int end) {
+        return Arrays.equals(header, 0, header.length, bytes, start, end);
+    }
+
+    /**
+     * Checks if every consumed column was found
+     * @return T - complete
+     */
+    public boolean isComplete() {
+        return isComplete;
+    }
+
+    /**
+     * Retrieves slot of the <b>column</b>
+     * @param column index of the column
+     * @return slot, -1 if column is not consumed
+     */
+    int slotOf(int column) {
+        return column < slotOf.length ? slotOf[column] : -1;
+    }
+
+    /**
+     * Retrieves last consumed column, cells after it are never split
+     * @return index of the column
+     */
+    int lastColumn() {
+        return lastColumn;
+    }
+}
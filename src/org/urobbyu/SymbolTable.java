@@ -0,0 +1,166 @@
+package org.urobbyu;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Bounded table of canonical strings kept between reloads, so repeated cells like device IDs, names and
+ * paths are decoded into the same instances instead of fresh copies every time.
+ * <p>
+ * Strings can be looked up by UTF-16LE bytes or by a part of another string, the hit allocates nothing.
+ * Table grows with the amount of strings, once it's full entries not used during the last <b>MAX_AGE</b> sweeps are dropped.
+ * If a single reload has more distinct strings than the table holds, the rest is returned uninterned. Not thread safe
+ */
+public final class SymbolTable {
+    private static final int MAX_AGE = 8;
+
+    private final int capacity;
+    private final int maxLength;
+    private String[] values;
+    private int[] hashes;
+    private int[] used;
+    private int size = 0;
+    private int generation = 0;
+    private int swept = 0;
+
+    /**
+     * @param capacity maximum amount of kept strings
+     */
+    public SymbolTable(int capacity) {
+        this.capacity = capacity;
+        // Next power of two doubled keeps the table at most half full
+        this.maxLength = Math.max(16, Integer.highestOneBit(Math.max(1, capacity) * 2 - 1) * 2);
+        allocate(16);
+    }
+
+    /**
+     * Retrieves canonical string of UTF-16LE encoded <b>bytes</b>
+     * @param bytes UTF-16LE encoded text
+     * @param start first byte
+     * @param end   end of the text, exclusive
+     * @return string
+     */
+    public String intern(byte[] bytes, int start, int end) {
+        if (start == end) return "";
+
+        int hash = 0;
+        for (int i = start; i < end; i += 2) hash = 31 * hash + charAt(bytes, i);
+
+        int mask = values.length - 1;
+        for (int i = slot(hash, mask); ; i = (i + 1) & mask) {
+            String value = values[i];
+            if (value == null) return add(i, hash, new String(bytes, start, end - start, StandardCharsets.UTF_16LE));
+            if (hashes[i] == hash && equals(value, bytes, start, end)) {
+                used[i] = generation;
+                return value;
+            }
+        }
+    }
+
+    /**
+     * Retrieves canonical string of a part of <b>text</b>
+     * @param text  text
+     * @param start first char
+     * @param end   end of the part, exclusive
+     * @return string
+     */
+    public String intern(String text, int start, int end) {
+        if (start == end) return "";
+
+        // Same polynomial as String.hashCode, which is cached by canonical strings passed again
+        int hash = 0;
+        if (start == 0 && end == text.length()) hash = text.hashCode();
+        else for (int i = start; i < end; i++) hash = 31 * hash + text.charAt(i);
+
+        int mask = values.length - 1;
+        for (int i = slot(hash, mask); ; i = (i + 1) & mask) {
+            String value = values[i];
+            if (value == null) return add(i, hash, start == 0 && end == text.length() ? text : text.substring(start, end));
+            if (hashes[i] == hash && (value == text || value.length() == end - start && value.regionMatches(0, text, start, end - start))) {
+                used[i] = generation;
+                return value;
+            }
+        }
+    }
+
+    /**
+     * Retrieves canonical string equal to <b>text</b>
+     * @param text text
+     * @return string
+     */
+    public String intern(String text) {
+        return intern(text, 0, text.length());
+    }
+
+    /**
+     * Ends one reload. Entries that weren't used lately are dropped if the table is full,
+     * at most once per <b>MAX_AGE</b> reloads
+     * @return this object
+     */
+    public SymbolTable sweep() {
+        generation++;
+        if (size < capacity || generation - swept < MAX_AGE) return this;
+
+        swept = generation;
+        rehash(values.length, MAX_AGE);
+        return this;
+    }
+
+    private String add(int index, int hash, String value) {
+        if (size >= capacity) return value;
+        values[index] = value;
+        hashes[index] = hash;
+        used[index] = generation;
+        size++;
+        if (size * 2 > values.length && values.length < maxLength) rehash(values.length * 2, Integer.MAX_VALUE);
+        return value;
+    }
+
+    /**
+     * Moves entries used during the last <b>maxAge</b> sweeps into the table of <b>length</b>
+     */
+    private void rehash(int length, int maxAge) {
+        String[] oldValues = values;
+        int[] oldHashes = hashes;
+        int[] oldUsed = used;
+        allocate(length);
+        for (int i = 0; i < oldValues.length; i++) {
+            if (oldValues[i] != null && generation - oldUsed[i] <= maxAge) put(oldHashes[i], oldValues[i], oldUsed[i]);
+        }
+    }
+
+    private void put(int hash, String value, int usedAt) {
+        int mask = values.length - 1;
+        int i = slot(hash, mask);
+        while (values[i] != null) i = (i + 1) & mask;
+        values[i] = value;
+        hashes[i] = hash;
+        used[i] = usedAt;
+        size++;
+    }
+
+    private void allocate(int length) {
+        values = new String[length];
+        hashes = new int[length];
+        used = new int[length];
+        size = 0;
+    }
+
+    /**
+     * Spreads high bits of the hash, so strings differing only at the end don't collide
+     */
+    private static int slot(int hash, int mask) {
+        return (hash ^ hash >>> 16) & mask;
+    }
+
+    private static boolean equals(String value, byte[] bytes, int start, int end) {
+        if (value.length() * 2 != end - start) return false;
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) != charAt(bytes, start + i * 2)) return false;
+        }
+        return true;
+    }
+
+    private static char charAt(byte[] bytes, int index) {
+        return (char) ((bytes[index] & 0xFF) | (bytes[index + 1] & 0xFF) << 8);
+    }
+}